@@ -1,36 +1,204 @@
 package EngineCore.Actions;
 
-import java.util.ArrayList;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
+import EngineCore.ErrorHandler;
+import EngineCore.Journal.ActionJournal;
+
 public class Action<T> {
-    private ActionDataContainer<T> data;
+    private volatile ActionDataContainer<T> data;
 
-    private ArrayList<Consumer<ActionDataContainer>> subscribers;
+    // immutable snapshots, (un)subscribing swaps in a new array with a CAS so trigger() just walks whatever array it read,
+    // no locks or copies there and no ConcurrentModificationException when components subscribe from other threads
+    private volatile Consumer<ActionDataContainer>[] subscribers;
+    private volatile Consumer<List<ActionDataContainer<T>>>[] batchSubscribers = new Consumer[0];
+    private static final VarHandle SUBSCRIBERS;
+    private static final VarHandle BATCH_SUBSCRIBERS;
+    static {
+        try{
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SUBSCRIBERS = lookup.findVarHandle(Action.class, "subscribers", Consumer[].class);
+            BATCH_SUBSCRIBERS = lookup.findVarHandle(Action.class, "batchSubscribers", Consumer[].class);
+        }catch(ReflectiveOperationException e){
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     public final String name;
 
+    // null = subscribers run on the triggering thread
+    private volatile AsyncDispatcher<T> dispatcher = null;
+
+    // set by EngineCore.startJournal, every trigger is appended to it before the subscribers see it
+    private volatile ActionJournal journal = null;
+
+    // set by EngineCore when the action is added, gets what the subscribers throw on the dispatcher thread
+    private volatile ErrorHandler errors = ErrorHandler.PRINT;
+
     public Action(String name, T defaultValue, Consumer<ActionDataContainer>... defaultCallbacks){
         this.name = name;
         this.data = new ActionDataContainer<>(defaultValue);
-        this.subscribers = new ArrayList<>();
-        this.subscribers.addAll(Arrays.asList(defaultCallbacks));
+        this.subscribers = Arrays.copyOf(defaultCallbacks, defaultCallbacks.length, Consumer[].class);
     }
 
     public void trigger(){
-        for(Consumer<ActionDataContainer> callback: this.subscribers){
-            callback.accept(this.data);
-        }
+        this.dispatch(this.data);
     }
 
     public void trigger(ActionDataContainer<T> data){
         this.data = data;
-        this.trigger();
+        this.dispatch(data);
+    }
+
+    private void dispatch(ActionDataContainer<T> data){
+        ActionJournal j = this.journal;
+        if(j != null){
+            j.append(this.name, data.getValue());
+        }
+        AsyncDispatcher<T> d = this.dispatcher;
+        if(d != null){
+            d.publish(data);
+            return;
+        }
+        Consumer<ActionDataContainer>[] subs = this.subscribers;
+        for(int i = 0; i < subs.length; i++){
+            subs[i].accept(data);
+        }
+        Consumer<List<ActionDataContainer<T>>>[] batchSubs = this.batchSubscribers;
+        if(batchSubs.length > 0){
+            List<ActionDataContainer<T>> batch = Collections.singletonList(data);
+            for(int i = 0; i < batchSubs.length; i++){
+                batchSubs[i].accept(batch);
+            }
+        }
+    }
+
+    // runs on the dispatcher thread in async mode
+    void deliver(List<ActionDataContainer<T>> batch){
+        Consumer<ActionDataContainer>[] subs = this.subscribers;
+        for(ActionDataContainer<T> data: batch){
+            for(Consumer<ActionDataContainer> callback: subs){
+                try{
+                    callback.accept(data);
+                }catch(Throwable e){ // a failing subscriber shouldn't kill the dispatcher thread
+                    this.errors.onError("action " + this.name, e);
+                }
+            }
+        }
+        for(Consumer<List<ActionDataContainer<T>>> callback: this.batchSubscribers){
+            try{
+                callback.accept(batch);
+            }catch(Throwable e){
+                this.errors.onError("action " + this.name, e);
+            }
+        }
     }
 
     public void subscribe(Consumer<ActionDataContainer> callback){
-        this.subscribers.add(callback);
+        addSubscriber(SUBSCRIBERS, this, callback);
+    }
+
+    // removes one subscription of exactly this callback (same instance), false if it wasn't subscribed
+    public boolean unsubscribe(Consumer<ActionDataContainer> callback){
+        return removeSubscriber(SUBSCRIBERS, this, callback);
+    }
+
+    public boolean unsubscribeBatch(Consumer<List<ActionDataContainer<T>>> callback){
+        return removeSubscriber(BATCH_SUBSCRIBERS, this, callback);
+    }
+
+    public int getSubscriberCount(){
+        return this.subscribers.length + this.batchSubscribers.length;
+    }
+
+    // false when nobody needs the data boxed in a container (the primitive actions skip boxing then)
+    boolean needsContainer(){
+        return this.subscribers.length > 0 || this.batchSubscribers.length > 0 || this.dispatcher != null || this.journal != null;
+    }
+
+    public void setJournal(ActionJournal journal){
+        this.journal = journal;
+    }
+
+    public ActionJournal getJournal(){
+        return this.journal;
+    }
+
+    public void setErrorHandler(ErrorHandler errors){
+        this.errors = errors == null ? ErrorHandler.PRINT : errors;
+    }
+
+    public ErrorHandler getErrorHandler(){
+        return this.errors;
+    }
+
+    // copy on write add/remove on the array field behind handle, shared with the primitive actions
+    static void addSubscriber(VarHandle handle, Action<?> action, Object callback){
+        while(true){
+            Object[] old = (Object[]) handle.getVolatile(action);
+            Object[] next = Arrays.copyOf(old, old.length + 1);
+            next[old.length] = callback;
+            if(handle.compareAndSet(action, old, next)){
+                return;
+            }
+        }
+    }
+
+    static boolean removeSubscriber(VarHandle handle, Action<?> action, Object callback){
+        while(true){
+            Object[] old = (Object[]) handle.getVolatile(action);
+            int index = -1;
+            for(int i = 0; i < old.length; i++){
+                if(old[i] == callback){
+                    index = i;
+                    break;
+                }
+            }
+            if(index == -1){
+                return false;
+            }
+            Object[] next = Arrays.copyOf(old, old.length - 1);
+            System.arraycopy(old, index + 1, next, index, old.length - index - 1);
+            if(handle.compareAndSet(action, old, next)){
+                return true;
+            }
+        }
+    }
+
+    // gets everything that was triggered since the last call at once (a single item when the action isn't async).
+    // the list is reused, copy what you want to keep
+    public void subscribeBatch(Consumer<List<ActionDataContainer<T>>> callback){
+        addSubscriber(BATCH_SUBSCRIBERS, this, callback);
+    }
+
+    // from now on trigger() only queues the data (in a ring of at least capacity slots) and the subscribers run on a
+    // dispatcher thread of this action, so a slow subscriber doesn't hold up whoever triggered it
+    public synchronized AsyncDispatcher<T> dispatchAsync(int capacity, AsyncDispatcher.Backpressure backpressure, int maxBatch){
+        if(this.dispatcher != null){
+            throw new IllegalStateException("Action is already dispatched asynchronously: " + this.name);
+        }
+        this.dispatcher = new AsyncDispatcher<>(this, capacity, backpressure, maxBatch);
+        return this.dispatcher;
+    }
+
+    // back to running the subscribers on the triggering thread, whatever was queued is delivered first.
+    // false if the dispatcher was still delivering after the timeout
+    public synchronized boolean dispatchSync(long timeoutMillis){
+        AsyncDispatcher<T> d = this.dispatcher;
+        if(d == null){
+            return true;
+        }
+        this.dispatcher = null;
+        return d.stop(timeoutMillis);
+    }
+
+    public AsyncDispatcher<T> getDispatcher(){
+        return this.dispatcher;
     }
 
     public ActionDataContainer getContainer(){
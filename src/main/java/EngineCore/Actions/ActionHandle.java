@@ -0,0 +1,43 @@
+package EngineCore.Actions;
+
+import java.util.function.Consumer;
+
+// an action resolved once (EngineCore.getActionHandle) so triggering it doesn't look it up by name every time.
+// keep it in a field and use it on the hot path
+public final class ActionHandle<T> {
+    private final Action<T> action;
+    public final String name;
+
+    public ActionHandle(Action<T> action){
+        this.action = action;
+        this.name = action.name;
+    }
+
+    public void trigger(){
+        this.action.trigger();
+    }
+
+    public void trigger(T value){
+        this.action.trigger(new ActionDataContainer<>(value));
+    }
+
+    public void trigger(ActionDataContainer<T> data){
+        this.action.trigger(data);
+    }
+
+    public void subscribe(Consumer<ActionDataContainer> callback){
+        this.action.subscribe(callback);
+    }
+
+    public boolean unsubscribe(Consumer<ActionDataContainer> callback){
+        return this.action.unsubscribe(callback);
+    }
+
+    public ActionPipeline<T> pipe(){
+        return ActionPipeline.from(this.action);
+    }
+
+    public Action<T> getAction(){
+        return this.action;
+    }
+}
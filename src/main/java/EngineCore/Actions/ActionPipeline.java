@@ -0,0 +1,366 @@
+package EngineCore.Actions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// operators between actions, e.g. core.pipeAction("input").filter(...).throttle(50).into(target).
+// the operators are fused into one subscriber on the source when into/forEach is called: values are handed from one stage to
+// the next as plain objects, only the target's trigger gets a container. the builder itself is immutable and every into()
+// builds fresh stages, so one pipeline can be wired to several targets.
+// stateless stages (map, filter) run on the triggering thread. the timed ones (batch, debounce, throttle) deliver late values
+// from the shared pipeline timer thread, put coalesceLatest() after them if the downstream is slow
+public final class ActionPipeline<T> {
+    // one stage of the fused chain
+    interface Stage<T> {
+        void push(T value);
+    }
+
+    private final Action<?> source;
+    private final Function<Stage<T>, Stage<Object>> wrap; // builds the chain from this operator up to the source
+
+    private ActionPipeline(Action<?> source, Function<Stage<T>, Stage<Object>> wrap){
+        this.source = source;
+        this.wrap = wrap;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ActionPipeline<T> from(Action<T> source){
+        return new ActionPipeline<T>(source, (Stage<T> down) -> (Stage<Object>) down);
+    }
+
+    private <R> ActionPipeline<R> then(Function<Stage<R>, Stage<T>> stage){
+        return new ActionPipeline<R>(this.source, (Stage<R> down) -> this.wrap.apply(stage.apply(down)));
+    }
+
+    public <R> ActionPipeline<R> map(Function<? super T, ? extends R> mapper){
+        return this.then((Stage<R> down) -> (T value) -> down.push(mapper.apply(value)));
+    }
+
+    public ActionPipeline<T> filter(Predicate<? super T> predicate){
+        return this.then((Stage<T> down) -> (T value) -> {
+            if(predicate.test(value)){
+                down.push(value);
+            }
+        });
+    }
+
+    // groups values into lists of at most maxSize, a list that isn't full is delivered windowMillis after its first value
+    // (0 = only full lists). every list is new, the downstream can keep it
+    public ActionPipeline<List<T>> batch(int maxSize, long windowMillis){
+        if(maxSize < 1 || windowMillis < 0){
+            throw new IllegalArgumentException("Batch needs a maxSize of at least 1 and a window of at least 0");
+        }
+        return this.then((Stage<List<T>> down) -> new BatchStage<T>(this.source, down, maxSize, windowMillis));
+    }
+
+    // only the last value of a burst gets through, once no value arrived for quietMillis
+    public ActionPipeline<T> debounce(long quietMillis){
+        if(quietMillis <= 0){
+            throw new IllegalArgumentException("Debounce needs a quiet period above 0");
+        }
+        return this.then((Stage<T> down) -> new DebounceStage<T>(this.source, down, quietMillis));
+    }
+
+    // at most one value every periodMillis. the first one goes through right away, of the ones that arrive during the
+    // period only the latest is delivered at the end of it. the downstream is called holding the stage's lock, so a value
+    // from the trigger and one from the timer never overtake each other
+    public ActionPipeline<T> throttle(long periodMillis){
+        if(periodMillis <= 0){
+            throw new IllegalArgumentException("Throttle needs a period above 0");
+        }
+        return this.then((Stage<T> down) -> new ThrottleStage<T>(this.source, down, periodMillis));
+    }
+
+    // the downstream runs on a pipeline worker thread and the triggering thread never waits for it. while the downstream
+    // is busy new values overwrite each other, when it's done it gets the latest one
+    public ActionPipeline<T> coalesceLatest(){
+        return this.then((Stage<T> down) -> new CoalesceStage<T>(this.source, down));
+    }
+
+    // wires the pipeline, returns the subscriber on the source (pass it to unsubscribe/EngineCore.unsubscribeFromAction to disconnect)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Consumer<ActionDataContainer> into(Action<? super T> target){
+        // primitive targets take the value directly so they only box when they have generic subscribers
+        if(target instanceof IntAction){
+            IntAction t = (IntAction) target;
+            return this.forEach((T value) -> t.trigger(((Number) value).intValue()));
+        }
+        if(target instanceof LongAction){
+            LongAction t = (LongAction) target;
+            return this.forEach((T value) -> t.trigger(((Number) value).longValue()));
+        }
+        if(target instanceof DoubleAction){
+            DoubleAction t = (DoubleAction) target;
+            return this.forEach((T value) -> t.trigger(((Number) value).doubleValue()));
+        }
+        Action raw = target;
+        return this.forEach((T value) -> raw.trigger(new ActionDataContainer<>(value)));
+    }
+
+    public Consumer<ActionDataContainer> into(ActionHandle<? super T> target){
+        return this.into(target.getAction());
+    }
+
+    public Consumer<ActionDataContainer> forEach(Consumer<? super T> sink){
+        Stage<Object> head = this.wrap.apply(sink::accept);
+        // primitive sources get a value subscriber, a container subscriber would make every trigger(int...) allocate one
+        if(this.source instanceof IntAction){
+            PrimitiveHead subscriber = new PrimitiveHead(head);
+            ((IntAction) this.source).subscribeValue(subscriber);
+            return subscriber;
+        }
+        if(this.source instanceof LongAction){
+            PrimitiveHead subscriber = new PrimitiveHead(head);
+            ((LongAction) this.source).subscribeValue(subscriber);
+            return subscriber;
+        }
+        if(this.source instanceof DoubleAction){
+            PrimitiveHead subscriber = new PrimitiveHead(head);
+            ((DoubleAction) this.source).subscribeValue(subscriber);
+            return subscriber;
+        }
+        Consumer<ActionDataContainer> subscriber = (ActionDataContainer data) -> head.push(data.getValue());
+        this.source.subscribe(subscriber);
+        return subscriber;
+    }
+
+    // the head of a pipeline on a primitive action. it's also the Consumer into/forEach hand back, the primitive actions'
+    // unsubscribe takes it out of their value subscribers
+    static final class PrimitiveHead implements Consumer<ActionDataContainer>, IntActionSubscriber, LongActionSubscriber, DoubleActionSubscriber {
+        private final Stage<Object> head;
+
+        PrimitiveHead(Stage<Object> head){
+            this.head = head;
+        }
+
+        @Override
+        public void accept(int value){
+            this.head.push(value);
+        }
+
+        @Override
+        public void accept(long value){
+            this.head.push(value);
+        }
+
+        @Override
+        public void accept(double value){
+            this.head.push(value);
+        }
+
+        @Override
+        public void accept(ActionDataContainer data){
+            this.head.push(data.getValue());
+        }
+    }
+
+    // values delivered from the timer or worker threads, an exception there would otherwise vanish in the executor.
+    // it goes to the source action's error handler, looked up when it happens since the engine sets it in addAction
+    private static <T> void pushSafely(Action<?> source, Stage<T> down, T value){
+        try{
+            down.push(value);
+        }catch(Throwable e){
+            source.getErrorHandler().onError("pipeline on " + source.name, e);
+        }
+    }
+
+    private static final class PipelineThreads {
+        static final ScheduledThreadPoolExecutor TIMER;
+        static final ExecutorService WORKERS = Executors.newCachedThreadPool((Runnable r) -> {
+            Thread th = new Thread(r, "ActionPipeline-worker");
+            th.setDaemon(true);
+            return th;
+        });
+        static {
+            TIMER = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+                Thread th = new Thread(r, "ActionPipeline-timer");
+                th.setDaemon(true);
+                return th;
+            });
+            TIMER.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    private static final class BatchStage<T> implements Stage<T> {
+        private final Action<?> source;
+        private final Stage<List<T>> down;
+        private final int maxSize;
+        private final long windowMillis;
+        private ArrayList<T> pending;
+        private long window = 0; // bumped on every flush so a late timer doesn't cut the next list short
+
+        BatchStage(Action<?> source, Stage<List<T>> down, int maxSize, long windowMillis){
+            this.source = source;
+            this.down = down;
+            this.maxSize = maxSize;
+            this.windowMillis = windowMillis;
+            this.pending = new ArrayList<>(Math.min(maxSize, 64));
+        }
+
+        @Override
+        public void push(T value){
+            ArrayList<T> full = null;
+            synchronized(this){
+                this.pending.add(value);
+                if(this.pending.size() >= this.maxSize){
+                    full = this.take();
+                }else if(this.pending.size() == 1 && this.windowMillis > 0){
+                    long w = this.window;
+                    PipelineThreads.TIMER.schedule(() -> this.flush(w), this.windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            if(full != null){
+                this.down.push(full);
+            }
+        }
+
+        private ArrayList<T> take(){
+            ArrayList<T> res = this.pending;
+            this.pending = new ArrayList<>(Math.min(this.maxSize, 64));
+            this.window += 1;
+            return res;
+        }
+
+        private void flush(long w){
+            ArrayList<T> res;
+            synchronized(this){
+                if(w != this.window || this.pending.isEmpty()){
+                    return;
+                }
+                res = this.take();
+            }
+            pushSafely(this.source, this.down, res);
+        }
+    }
+
+    private static final class DebounceStage<T> implements Stage<T> {
+        private final Action<?> source;
+        private final Stage<T> down;
+        private final long quietNanos;
+        private T latest;
+        private long lastArrival;
+        private boolean scheduled = false;
+
+        DebounceStage(Action<?> source, Stage<T> down, long quietMillis){
+            this.source = source;
+            this.down = down;
+            this.quietNanos = quietMillis * 1_000_000;
+        }
+
+        @Override
+        public synchronized void push(T value){
+            this.latest = value;
+            this.lastArrival = System.nanoTime();
+            if(!this.scheduled){
+                this.scheduled = true;
+                PipelineThreads.TIMER.schedule(this::fire, this.quietNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void fire(){
+            T value;
+            synchronized(this){
+                long left = this.lastArrival + this.quietNanos - System.nanoTime();
+                if(left > 0){ // something came in since we were scheduled, wait for the rest of its quiet period
+                    PipelineThreads.TIMER.schedule(this::fire, left, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                value = this.latest;
+                this.latest = null;
+                this.scheduled = false;
+            }
+            pushSafely(this.source, this.down, value);
+        }
+    }
+
+    private static final class ThrottleStage<T> implements Stage<T> {
+        private final Action<?> source;
+        private final Stage<T> down;
+        private final long periodNanos;
+        private long lastEmit;
+        private T latest;
+        private boolean hasLatest = false;
+        private boolean scheduled = false;
+
+        ThrottleStage(Action<?> source, Stage<T> down, long periodMillis){
+            this.source = source;
+            this.down = down;
+            this.periodNanos = periodMillis * 1_000_000;
+            this.lastEmit = System.nanoTime() - this.periodNanos;
+        }
+
+        @Override
+        public synchronized void push(T value){
+            long now = System.nanoTime();
+            if(this.scheduled || now - this.lastEmit < this.periodNanos){
+                this.latest = value;
+                this.hasLatest = true;
+                if(!this.scheduled){
+                    this.scheduled = true;
+                    PipelineThreads.TIMER.schedule(this::fire, this.lastEmit + this.periodNanos - now, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+            this.lastEmit = now;
+            this.down.push(value);
+        }
+
+        private synchronized void fire(){
+            this.scheduled = false;
+            if(!this.hasLatest){
+                return;
+            }
+            T value = this.latest;
+            this.latest = null;
+            this.hasLatest = false;
+            this.lastEmit = System.nanoTime();
+            pushSafely(this.source, this.down, value);
+        }
+    }
+
+    private static final class CoalesceStage<T> implements Stage<T> {
+        private static final Object EMPTY = new Object();
+        private final Action<?> source;
+        private final Stage<T> down;
+        private final AtomicReference<Object> latest = new AtomicReference<>(EMPTY);
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+
+        CoalesceStage(Action<?> source, Stage<T> down){
+            this.source = source;
+            this.down = down;
+        }
+
+        @Override
+        public void push(T value){
+            this.latest.set(value);
+            if(this.draining.compareAndSet(false, true)){
+                PipelineThreads.WORKERS.execute(this::drain);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void drain(){
+            while(true){
+                Object value = this.latest.getAndSet(EMPTY);
+                if(value == EMPTY){
+                    this.draining.set(false);
+                    // a value set between the getAndSet and here saw draining still true and didn't start a drain
+                    if(this.latest.get() != EMPTY && this.draining.compareAndSet(false, true)){
+                        continue;
+                    }
+                    return;
+                }
+                pushSafely(this.source, this.down, (T) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package EngineCore.Actions;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// async dispatch for an Action (Action.dispatchAsync): trigger() only puts the data in a preallocated ring and returns,
+// a dispatcher thread hands it to the subscribers in order. batch subscribers get everything that piled up at once (up to maxBatch).
+// publishers claim slots with a CAS on the claim sequence and publish them by writing the slot's sequence, the dispatcher
+// only reads contiguous published slots (same idea as the LMAX disruptor's sequence barrier). the dispatcher copies a batch
+// out before committing it with a CAS on the consumed sequence, so a DROP_OLDEST publisher can't pull slots from under it
+public class AsyncDispatcher<T> {
+    public enum Backpressure {
+        BLOCK, // the publisher waits for room
+        DROP_OLDEST, // the oldest data that wasn't delivered yet is dropped to make room
+        DROP_NEWEST // the data being published is dropped
+    }
+
+    private final Action<T> action;
+    public final int capacity;
+    private final int mask;
+    public final Backpressure backpressure;
+    public final int maxBatch;
+
+    private final ActionDataContainer<T>[] values;
+    private final AtomicLongArray published; // sequence last published in every slot
+    // claimed is set to CLOSED once the stopped dispatcher delivered everything, after that nothing can be claimed
+    private static final long CLOSED = Long.MIN_VALUE;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1); // last sequence taken by the dispatcher (or dropped)
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long delivered = 0;
+
+    private final ArrayList<ActionDataContainer<T>> batch; // reused for every batch, subscribers must not keep it
+    private volatile boolean waiting = false;
+    private volatile boolean running = true;
+    private final Thread thread;
+
+    @SuppressWarnings("unchecked")
+    AsyncDispatcher(Action<T> action, int capacity, Backpressure backpressure, int maxBatch){
+        if(capacity < 1 || maxBatch < 1){
+            throw new IllegalArgumentException("Async dispatch needs a capacity and maxBatch of at least 1");
+        }
+        this.action = action;
+        int cap = 1;
+        while(cap < capacity){ // power of two so the slot is just seq & mask
+            cap <<= 1;
+        }
+        this.capacity = cap;
+        this.mask = this.capacity - 1;
+        this.backpressure = backpressure;
+        this.maxBatch = Math.min(maxBatch, this.capacity);
+        this.values = (ActionDataContainer<T>[]) new ActionDataContainer[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+        for(int i = 0; i < this.capacity; i++){
+            this.published.set(i, -1);
+        }
+        this.batch = new ArrayList<>(this.maxBatch);
+        this.thread = new Thread(this::run, "ActionDispatcher-" + action.name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // false if the data was dropped (full ring with DROP_NEWEST, or the dispatcher was stopped)
+    public boolean publish(ActionDataContainer<T> data){
+        long seq;
+        int waits = 0;
+        while(true){
+            if(!this.running){
+                this.dropped.incrementAndGet();
+                return false;
+            }
+            long cur = this.claimed.get();
+            if(cur == CLOSED){ // got past the running check while the dispatcher did its last drain
+                this.dropped.incrementAndGet();
+                return false;
+            }
+            long oldest = this.consumed.get();
+            if(cur + 1 - this.capacity > oldest){ // full
+                if(this.backpressure == Backpressure.DROP_NEWEST){
+                    this.dropped.incrementAndGet();
+                    return false;
+                }
+                if(this.backpressure == Backpressure.DROP_OLDEST){
+                    long victim = oldest + 1;
+                    // only published slots, the publisher of an unpublished one is still about to write it
+                    if(this.published.get((int) (victim & this.mask)) == victim && this.consumed.compareAndSet(oldest, victim)){
+                        this.dropped.incrementAndGet();
+                    }else{
+                        Thread.onSpinWait();
+                    }
+                    continue;
+                }
+                if(waits < 100){
+                    Thread.onSpinWait();
+                }else{
+                    LockSupport.parkNanos(20_000);
+                }
+                waits += 1;
+                continue;
+            }
+            if(this.claimed.compareAndSet(cur, cur + 1)){
+                seq = cur + 1;
+                break;
+            }
+        }
+        int i = (int) (seq & this.mask);
+        this.values[i] = data;
+        this.published.set(i, seq);
+        if(this.waiting){
+            LockSupport.unpark(this.thread);
+        }
+        return true;
+    }
+
+    private void run(){
+        int idle = 0;
+        while(true){
+            long from = this.consumed.get() + 1;
+            this.batch.clear();
+            long seq = from;
+            while(seq - from < this.maxBatch){
+                int i = (int) (seq & this.mask);
+                if(this.published.get(i) != seq){
+                    break;
+                }
+                this.batch.add(this.values[i]);
+                seq += 1;
+            }
+            if(this.batch.isEmpty()){
+                if(!this.running){
+                    // drained up to the last claimed slot, close the claims so a publisher that already passed its running
+                    // check can't claim a slot nobody reads anymore (its CAS fails and it counts the data as dropped)
+                    long last = this.claimed.get();
+                    if(last == this.consumed.get() && this.claimed.compareAndSet(last, CLOSED)){
+                        return;
+                    }
+                    Thread.yield(); // a publisher claimed a slot and is still writing it
+                    continue;
+                }
+                if(idle < 100){
+                    Thread.onSpinWait();
+                }else{
+                    this.waiting = true;
+                    if(this.published.get((int) (from & this.mask)) != from && this.running){
+                        LockSupport.parkNanos(this, 100_000_000L);
+                    }
+                    this.waiting = false;
+                }
+                idle += 1;
+                continue;
+            }
+            idle = 0;
+            if(!this.consumed.compareAndSet(from - 1, seq - 1)){
+                continue; // DROP_OLDEST dropped some of these while we read them, read again
+            }
+            this.action.deliver(this.batch);
+            this.delivered += this.batch.size();
+        }
+    }
+
+    // stops taking new data, delivers what's already in the ring and waits for the dispatcher thread.
+    // false if it's still delivering after the timeout
+    public boolean stop(long timeoutMillis){
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        if(this.thread == Thread.currentThread()){
+            return true; // stopped from one of the subscribers, it ends once they return
+        }
+        try{
+            this.thread.join(Math.max(1, timeoutMillis));
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        return !this.thread.isAlive();
+    }
+
+    public long getDropped(){
+        return this.dropped.get();
+    }
+
+    public long getDelivered(){
+        return this.delivered;
+    }
+
+    // published but not delivered yet
+    public long getBacklog(){
+        long claimed = this.claimed.get();
+        return claimed == CLOSED ? 0 : Math.max(0, claimed - this.consumed.get());
+    }
+
+    @Override
+    public String toString(){
+        return "async " + this.backpressure + ", capacity: " + this.capacity + ", backlog: " + this.getBacklog()
+                + ", delivered: " + this.delivered + ", dropped: " + this.dropped.get();
+    }
+}
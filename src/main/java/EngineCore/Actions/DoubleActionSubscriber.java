@@ -0,0 +1,7 @@
+package EngineCore.Actions;
+
+// subscriber of a DoubleAction, gets the value without boxing
+@FunctionalInterface
+public interface DoubleActionSubscriber {
+    void accept(double value);
+}
@@ -0,0 +1,91 @@
+package EngineCore.Actions;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+// action carrying a int, trigger(int) hands the value to the IntActionSubscribers without boxing or allocating.
+// it's still a normal Action<Integer> (registry, subscribeToAction, connectActions all work), the value only gets boxed
+// when there are Consumer<ActionDataContainer> subscribers or async dispatch (which only applies to those, the
+// IntActionSubscribers always run on the triggering thread)
+public class IntAction extends Action<Integer> {
+    private volatile int value;
+    private volatile IntActionSubscriber[] valueSubscribers = new IntActionSubscriber[0];
+    private static final VarHandle VALUE_SUBSCRIBERS;
+    static {
+        try{
+            VALUE_SUBSCRIBERS = MethodHandles.lookup().findVarHandle(IntAction.class, "valueSubscribers", IntActionSubscriber[].class);
+        }catch(ReflectiveOperationException e){
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public IntAction(String name, int defaultValue){
+        super(name, defaultValue);
+        this.value = defaultValue;
+    }
+
+    public void trigger(int value){
+        this.value = value;
+        IntActionSubscriber[] subs = this.valueSubscribers;
+        for(int i = 0; i < subs.length; i++){
+            subs[i].accept(value);
+        }
+        if(this.needsContainer()){
+            super.trigger(new ActionDataContainer<>(value));
+        }
+    }
+
+    @Override
+    public void trigger(){
+        this.trigger(this.value);
+    }
+
+    @Override
+    public void trigger(ActionDataContainer<Integer> data){
+        Integer v = data.getValue();
+        // null comes from generic sources (connectActions, a journaled or bridged null). there's no int to hand
+        // to the value subscribers then, only the container subscribers get it and the value stays what it was
+        if(v != null){
+            this.value = v;
+            IntActionSubscriber[] subs = this.valueSubscribers;
+            for(int i = 0; i < subs.length; i++){
+                subs[i].accept(v);
+            }
+        }
+        if(this.needsContainer()){
+            super.trigger(data);
+        }
+    }
+
+    public int getValue(){
+        return this.value;
+    }
+
+    @Override
+    public ActionDataContainer getContainer(){
+        return new ActionDataContainer<>(this.value);
+    }
+
+    public void subscribeValue(IntActionSubscriber callback){
+        addSubscriber(VALUE_SUBSCRIBERS, this, callback);
+    }
+
+    public boolean unsubscribeValue(IntActionSubscriber callback){
+        return removeSubscriber(VALUE_SUBSCRIBERS, this, callback);
+    }
+
+    // a pipeline on this action subscribes as a value subscriber and returns that same object (see ActionPipeline.forEach)
+    @Override
+    public boolean unsubscribe(Consumer<ActionDataContainer> callback){
+        if(callback instanceof IntActionSubscriber && this.unsubscribeValue((IntActionSubscriber) callback)){
+            return true;
+        }
+        return super.unsubscribe(callback);
+    }
+
+    @Override
+    public int getSubscriberCount(){
+        return super.getSubscriberCount() + this.valueSubscribers.length;
+    }
+}
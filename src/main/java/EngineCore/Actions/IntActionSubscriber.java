@@ -0,0 +1,7 @@
+package EngineCore.Actions;
+
+// subscriber of a IntAction, gets the value without boxing
+@FunctionalInterface
+public interface IntActionSubscriber {
+    void accept(int value);
+}
@@ -0,0 +1,91 @@
+package EngineCore.Actions;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+// action carrying a long, trigger(long) hands the value to the LongActionSubscribers without boxing or allocating.
+// it's still a normal Action<Long> (registry, subscribeToAction, connectActions all work), the value only gets boxed
+// when there are Consumer<ActionDataContainer> subscribers or async dispatch (which only applies to those, the
+// LongActionSubscribers always run on the triggering thread)
+public class LongAction extends Action<Long> {
+    private volatile long value;
+    private volatile LongActionSubscriber[] valueSubscribers = new LongActionSubscriber[0];
+    private static final VarHandle VALUE_SUBSCRIBERS;
+    static {
+        try{
+            VALUE_SUBSCRIBERS = MethodHandles.lookup().findVarHandle(LongAction.class, "valueSubscribers", LongActionSubscriber[].class);
+        }catch(ReflectiveOperationException e){
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public LongAction(String name, long defaultValue){
+        super(name, defaultValue);
+        this.value = defaultValue;
+    }
+
+    public void trigger(long value){
+        this.value = value;
+        LongActionSubscriber[] subs = this.valueSubscribers;
+        for(int i = 0; i < subs.length; i++){
+            subs[i].accept(value);
+        }
+        if(this.needsContainer()){
+            super.trigger(new ActionDataContainer<>(value));
+        }
+    }
+
+    @Override
+    public void trigger(){
+        this.trigger(this.value);
+    }
+
+    @Override
+    public void trigger(ActionDataContainer<Long> data){
+        Long v = data.getValue();
+        // null comes from generic sources (connectActions, a journaled or bridged null). there's no long to hand
+        // to the value subscribers then, only the container subscribers get it and the value stays what it was
+        if(v != null){
+            this.value = v;
+            LongActionSubscriber[] subs = this.valueSubscribers;
+            for(int i = 0; i < subs.length; i++){
+                subs[i].accept(v);
+            }
+        }
+        if(this.needsContainer()){
+            super.trigger(data);
+        }
+    }
+
+    public long getValue(){
+        return this.value;
+    }
+
+    @Override
+    public ActionDataContainer getContainer(){
+        return new ActionDataContainer<>(this.value);
+    }
+
+    public void subscribeValue(LongActionSubscriber callback){
+        addSubscriber(VALUE_SUBSCRIBERS, this, callback);
+    }
+
+    public boolean unsubscribeValue(LongActionSubscriber callback){
+        return removeSubscriber(VALUE_SUBSCRIBERS, this, callback);
+    }
+
+    // a pipeline on this action subscribes as a value subscriber and returns that same object (see ActionPipeline.forEach)
+    @Override
+    public boolean unsubscribe(Consumer<ActionDataContainer> callback){
+        if(callback instanceof LongActionSubscriber && this.unsubscribeValue((LongActionSubscriber) callback)){
+            return true;
+        }
+        return super.unsubscribe(callback);
+    }
+
+    @Override
+    public int getSubscriberCount(){
+        return super.getSubscriberCount() + this.valueSubscribers.length;
+    }
+}
@@ -0,0 +1,7 @@
+package EngineCore.Actions;
+
+// subscriber of a LongAction, gets the value without boxing
+@FunctionalInterface
+public interface LongActionSubscriber {
+    void accept(long value);
+}
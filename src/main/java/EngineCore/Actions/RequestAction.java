@@ -0,0 +1,131 @@
+package EngineCore.Actions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import EngineCore.DefaultComponents.CoreComponent;
+
+// an action that answers. request() queues the value and returns a future right away, the responder component handles
+// the queued requests on its own thread right before its steps (so the handler can touch the component's state without locks)
+// and completes the futures. chain on the future (thenAccept, thenCompose...) instead of polling for the answer.
+// requests made while nobody serves the action wait for a responder until they time out
+public final class RequestAction<Q, R> {
+    // at most this many requests are handled before a step, the rest wait for the next one so step() isn't starved
+    public static final int MAX_REQUESTS_PER_STEP = 256;
+
+    private static final class Request<Q, R> {
+        final Q value;
+        final CompletableFuture<R> reply;
+        volatile boolean taken = false; // polled by the responder
+
+        Request(Q value, CompletableFuture<R> reply){
+            this.value = value;
+            this.reply = reply;
+        }
+    }
+
+    private static final class Responder<Q, R> {
+        final CoreComponent component;
+        final Function<? super Q, ? extends R> handler;
+
+        Responder(CoreComponent component, Function<? super Q, ? extends R> handler){
+            this.component = component;
+            this.handler = handler;
+        }
+    }
+
+    public final String name;
+    private final ConcurrentLinkedQueue<Request<Q, R>> inbox = new ConcurrentLinkedQueue<>();
+    private volatile Responder<Q, R> responder = null;
+
+    public RequestAction(String name){
+        this.name = name;
+    }
+
+    // the future fails with a TimeoutException if no answer came in timeoutMillis (0 = wait forever),
+    // or with whatever the handler threw
+    public CompletableFuture<R> request(Q value, long timeoutMillis){
+        CompletableFuture<R> reply = new CompletableFuture<>();
+        if(timeoutMillis > 0){
+            reply.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        Request<Q, R> req = new Request<>(value, reply);
+        this.inbox.add(req);
+        // timed out or cancelled before the responder got to it, take it out of the inbox right away. otherwise only
+        // serveQueued would ever remove it, and with nobody serving the action those requests would pile up forever
+        reply.whenComplete((R res, Throwable e) -> {
+            if(!req.taken){
+                this.inbox.remove(req);
+            }
+        });
+        Responder<Q, R> r = this.responder;
+        if(r != null){
+            r.component.wake();
+        }
+        return reply;
+    }
+
+    // serving it again from the same component just swaps the handler (update() runs again when a component restarts)
+    public synchronized void serve(CoreComponent component, Function<? super Q, ? extends R> handler){
+        Responder<Q, R> old = this.responder;
+        if(old != null && old.component != component){
+            throw new IllegalStateException("Request action " + this.name + " is already served by " + old.component.name);
+        }
+        this.responder = new Responder<>(component, handler);
+        if(old == null){
+            component.addServedRequests(this);
+        }
+        component.wake(); // there might be requests waiting already
+    }
+
+    // false if component wasn't serving it. queued requests stay for the next responder
+    public synchronized boolean stopServing(CoreComponent component){
+        Responder<Q, R> r = this.responder;
+        if(r == null || r.component != component){
+            return false;
+        }
+        this.responder = null;
+        component.removeServedRequests(this);
+        return true;
+    }
+
+    public CoreComponent getResponder(){
+        Responder<Q, R> r = this.responder;
+        return r == null ? null : r.component;
+    }
+
+    public int getQueuedRequests(){
+        return this.inbox.size();
+    }
+
+    // called by the responder right before its step, on its thread. returns true if it answered anything
+    public boolean serveQueued(CoreComponent component){
+        Responder<Q, R> r = this.responder;
+        if(r == null || r.component != component){
+            return false;
+        }
+        boolean served = false;
+        for(int i = 0; i < MAX_REQUESTS_PER_STEP; i++){
+            Request<Q, R> req = this.inbox.poll();
+            if(req == null){
+                return served;
+            }
+            req.taken = true;
+            if(req.reply.isDone()){ // timed out (or cancelled) while it was queued, nobody wants the answer anymore
+                continue;
+            }
+            served = true;
+            try{
+                req.reply.complete(r.handler.apply(req.value));
+            }catch(Throwable e){ // the requester gets the failure, the responder keeps going
+                req.reply.completeExceptionally(e);
+            }
+        }
+        if(!this.inbox.isEmpty()){
+            component.wake(); // more than we handle in one go, come back next step
+        }
+        return served;
+    }
+}
@@ -2,12 +2,20 @@ package EngineCore.DefaultComponents;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.function.Consumer;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import EngineCore.EngineCore;
 import EngineCore.TestingEnviromentCore;
+import EngineCore.Actions.RequestAction;
+import EngineCore.Threading.LatencyHistogram;
+import EngineCore.Threading.PriorityClass;
+import EngineCore.Threading.Wakeable;
 
 public abstract class CoreComponent {
     public boolean active = false;
@@ -17,164 +25,415 @@ public abstract class CoreComponent {
     public final ArrayList<CoreComponentSettings> settings;
     public final ArrayList<ComponentType> dependencies;
 
-    protected CoreComponentBackingThread runningThread;
+    protected volatile CoreComponentBackingThread runningThread;
     public int threadId = 0;
-    public static class CoreComponentBackingThread extends Thread{
+    public static class CoreComponentBackingThread extends Thread implements Wakeable{
 
-        public ArrayList<Consumer<Integer>> stepFuncs = new ArrayList<>();
-        public Map<String, Integer> attachedComponentStepIndex = new HashMap<>();
+        // copy-on-write step table. writers (attach/detach) copy it under attachLock and publish the new array,
+        // the loop reads the field once per iteration and never locks, so changes take effect on the next iteration
+        private volatile CoreComponent[] attached = new CoreComponent[0];
+        private final Object attachLock = new Object();
         public EngineCore core;
-        public Boolean stepNotifier = false;
+        // notified after every loop, but only when someone is waiting in awaitLoop
+        public final Object stepNotifier = new Object();
+        private volatile int stepWaiters = 0;
 
-        private ArrayList<Integer> pausedComponents = new ArrayList<>();
+        private boolean workDone = false;
+        private volatile boolean signalled = false;
+
+        // a timed component's place in this thread's tick queue. the deadline lives here and not on the component,
+        // a component that moved keeps a stale entry in its old thread's queue until that thread drops it, and the new
+        // thread must not change the key of an entry sitting in someone else's heap
+        private static final class TickEntry {
+            final CoreComponent comp;
+            long due;
+
+            TickEntry(CoreComponent comp, long due){
+                this.comp = comp;
+                this.due = due;
+            }
+        }
+
+        // timed components ordered by when they're due next, only touched by this thread
+        private final PriorityQueue<TickEntry> tickQueue = new PriorityQueue<>((a, b) -> Long.compare(a.due - b.due, 0));
+        // components that got attached or had their tick rate changed, picked up at the start of the next loop
+        private final ConcurrentLinkedQueue<CoreComponent> tickRateChanges = new ConcurrentLinkedQueue<>();
+        private int freeRunning = 0;
+
+        // the Thread the loop actually runs on, this or a virtual thread running this as a Runnable
+        private volatile Thread executor = this;
+        private final boolean virtual;
+
+        // loop timings, written only by this thread into preallocated slots (no boxing, no shared map).
+        // guarded by a seqlock so getLoopTiming() always sees the three values from the same loop
+        private volatile long timingSeq = 0;
+        private long loopCount = 0;
+        private long lastLoopNanos = 0;
+        // average time one loop over the components takes (busy time only, idling isn't counted)
+        private long loopNanos = 0;
 
         public String[] getAttachedComponents() {
-        	    return attachedComponentStepIndex
-        			           .keySet()
-        			             .toArray(new String[0]);
+            CoreComponent[] comps = this.attached;
+            String[] res = new String[comps.length];
+            for(int i = 0; i < comps.length; i++){
+                res[i] = comps[i].name;
+            }
+            return res;
+        }
 
+        public CoreComponent[] getAttachedComponentInstances(){
+            return this.attached.clone();
         }
         
         public boolean isComponentAttached(String compName){
-            return this.attachedComponentStepIndex.containsKey(compName);
+            return this.indexOf(this.attached, compName) != -1;
+        }
+
+        // after a component's priority changed
+        void sortByPriority(){
+            synchronized (this.attachLock){
+                CoreComponent[] next = this.attached.clone();
+                Arrays.sort(next, (a, b) -> a.priority.compareTo(b.priority)); // stable, same class keeps its order
+                this.attached = next;
+            }
+        }
+
+        private int indexOf(CoreComponent[] comps, String compName){
+            for(int i = 0; i < comps.length; i++){
+                if(comps[i].name.equals(compName)){
+                    return i;
+                }
+            }
+            return -1;
         }
         
         public String[] getPausedComponents() {
-        	ArrayList<String> res = new ArrayList<>();
-        	for(Integer in: pausedComponents) { // i don't think efficiency matters that much here :/
-        		for(Map.Entry<String, Integer> comp: attachedComponentStepIndex.entrySet()) {
-            		if(comp.getValue() == in) {
-            			res.add(comp.getKey());
-            		}
-            	}	
-        	}
-        	return res.toArray(new String[0]);
+            ArrayList<String> res = new ArrayList<>();
+            for(CoreComponent comp: this.attached){
+                if(comp.executionPaused){
+                    res.add(comp.name);
+                }
+            }
+            return res.toArray(new String[0]);
         }
 
         public void attachComponent(CoreComponent comp){
-            synchronized (this.stepFuncs){
-                synchronized (this.attachedComponentStepIndex){
-                    boolean wasRunning = run;
-                    if(this.run){
-                        this.stopRunning();
-                    }
-                    // TODO: prob should verify if component is already in list(2 lazy to do)
-                    this.stepFuncs.add((Integer o) -> {comp.step(this.core);});
-                    this.attachedComponentStepIndex.put(comp.name, this.stepFuncs.size()-1);
-                    if(wasRunning){
-                        this.startRunning();
-                    }
+            synchronized (this.attachLock){
+                CoreComponent[] old = this.attached;
+                if(this.indexOf(old, comp.name) != -1){
+                    return; // already attached
+                }
+                // kept in priority order so higher classes step first every loop
+                int at = old.length;
+                while(at > 0 && old[at - 1].priority.ordinal() > comp.priority.ordinal()){
+                    at -= 1;
                 }
+                CoreComponent[] next = new CoreComponent[old.length + 1];
+                System.arraycopy(old, 0, next, 0, at);
+                next[at] = comp;
+                System.arraycopy(old, at, next, at + 1, old.length - at);
+                comp.runningThread = this;
+                comp.waker = this;
+                if(comp.tickPeriodNanos > 0){
+                    this.tickRateChanges.add(comp);
+                }
+                this.attached = next;
             }
+            this.wake();
         }
 
         public void deattachComponent(CoreComponent comp){
-            synchronized (this.stepFuncs){
-                synchronized (this.attachedComponentStepIndex){
-                    boolean wasRunning = run;
-                    if(this.run){
-                        this.stopRunning();
-                    }
-                    int index = -1;
-                    for(Map.Entry<String, Integer> cEntry: this.attachedComponentStepIndex.entrySet()){
-                        if(cEntry.getKey() == comp.name){
-                            index = cEntry.getValue();
-                        }
-                    }
-                    if(index == -1){
-                        throw new IllegalArgumentException("Component was not attached to thread. CoreComponentBackingThread.deattachComponent, component name: " + comp.name + ", threadName: " + this.getName());
-                    }
-                    this.stepFuncs.remove(index);
-                    this.attachedComponentStepIndex.remove(comp.name);
-                    if(wasRunning){
-                        this.startRunning();
-                    }
+            synchronized (this.attachLock){
+                CoreComponent[] old = this.attached;
+                int index = this.indexOf(old, comp.name);
+                if(index == -1){
+                    throw new IllegalArgumentException("Component was not attached to thread. CoreComponentBackingThread.deattachComponent, component name: " + comp.name + ", threadName: " + this.getName());
+                }
+                CoreComponent[] next = new CoreComponent[old.length - 1];
+                System.arraycopy(old, 0, next, 0, index);
+                System.arraycopy(old, index + 1, next, index, old.length - index - 1);
+                this.attached = next;
+                if(comp.runningThread == this){
+                    comp.runningThread = null;
+                    comp.waker = null;
                 }
             }
         }
 
         public void pauseComponentExecution(String name){
-            int index = -1;
-            for(Map.Entry<String, Integer> cEntry: this.attachedComponentStepIndex.entrySet()){
-                if(cEntry.getKey() == name){
-                    index = cEntry.getValue();
-                }
-            }
-            if(index == -1) {
+            if(!this.isComponentAttached(name)) {
             	throw new IllegalArgumentException("Couldn't pause component because it's not on this thread: " + name);
             }
-            this.pausedComponents.add(index);
+            this.attached[this.indexOf(this.attached, name)].pauseExecution();
         }
 
         public void resumeComponentExecution(String name){
-            int index = -1;
-            for(Map.Entry<String, Integer> cEntry: this.attachedComponentStepIndex.entrySet()){
-                if(cEntry.getKey() == name){
-                    index = cEntry.getValue();
-                }
+            if(!this.isComponentAttached(name)) {
+            	throw new IllegalArgumentException("Couldn't resume component because it's not on this thread: " + name);
             }
-            if(index == -1) {
-            	throw new IllegalArgumentException("Couldn't pause component because it's not on this thread: " + name);
-            }
-            this.pausedComponents.remove(index);
+            this.attached[this.indexOf(this.attached, name)].resumeExecution();
         }
 
         public CoreComponentBackingThread(EngineCore core){
+            this(core, false);
+        }
+
+        // virtual = run the loop on a virtual thread instead of this platform thread.
+        // the object is still what goes into threadsList, the virtual thread just carries its run()
+        public CoreComponentBackingThread(EngineCore core, boolean virtual){
             this.core = core;
+            this.virtual = virtual;
+        }
+
+        public boolean runsOnVirtualThread(){
+            return this.virtual;
+        }
+
+        // one of the dedicated HIGH priority threads (EngineCore.highPriorityThreads), the load balancer leaves those alone
+        private volatile boolean dedicated = false;
+
+        public void setDedicated(boolean dedicated){
+            this.dedicated = dedicated;
+        }
+
+        public boolean isDedicated(){
+            return this.dedicated;
+        }
+
+        public static class LoopTiming {
+            public final long loops;
+            public final long lastLoopNanos;
+            public final long averageLoopNanos;
+
+            LoopTiming(long loops, long lastLoopNanos, long averageLoopNanos){
+                this.loops = loops;
+                this.lastLoopNanos = lastLoopNanos;
+                this.averageLoopNanos = averageLoopNanos;
+            }
+        }
+
+        private void recordLoopTime(long nanos){
+            this.timingSeq = this.timingSeq + 1; // odd = write in progress
+            VarHandle.storeStoreFence();
+            this.loopCount += 1;
+            this.lastLoopNanos = nanos;
+            this.loopNanos += (nanos - this.loopNanos) >> 3;
+            this.timingSeq = this.timingSeq + 1;
+        }
+
+        public LoopTiming getLoopTiming(){
+            while(true){
+                long seq = this.timingSeq;
+                long loops = this.loopCount;
+                long last = this.lastLoopNanos;
+                long avg = this.loopNanos;
+                VarHandle.loadLoadFence();
+                if((seq & 1) == 0 && seq == this.timingSeq){
+                    return new LoopTiming(loops, last, avg);
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        public long getLoopNanos(){
+            return this.getLoopTiming().averageLoopNanos;
+        }
+
+        // blocks until this thread finished another loop over its components (or the timeout ran out)
+        public void awaitLoop(long timeoutMillis) throws InterruptedException{
+            synchronized(this.stepNotifier){
+                this.stepWaiters += 1;
+                this.wake(); // it might be parked with nothing to do
+                try{
+                    this.stepNotifier.wait(timeoutMillis);
+                }finally{
+                    this.stepWaiters -= 1;
+                }
+            }
+        }
+
+        // makes the thread run its components again right away, even if it's parked in the idle strategy.
+        // a wake that arrives while the components are stepping makes the thread do one more loop instead of idling
+        @Override
+        public void wake(){
+            this.signalled = true;
+            LockSupport.unpark(this.executor);
+        }
+
+        void scheduleTickRateChange(CoreComponent comp){
+            this.tickRateChanges.add(comp);
+            this.wake();
+        }
+
+        private void applyTickRateChanges(){
+            CoreComponent comp;
+            while((comp = this.tickRateChanges.poll()) != null){
+                CoreComponent changed = comp;
+                this.tickQueue.removeIf((TickEntry e) -> e.comp == changed);
+                if(comp.runningThread == this && comp.tickPeriodNanos > 0){
+                    this.tickQueue.add(new TickEntry(comp, System.nanoTime())); // first tick right away
+                }
+            }
+        }
+
+        // steps every timed component that is due and returns the nanos until the next one is (Long.MAX_VALUE if there are none)
+        private long stepDueComponents(){
+            long now = System.nanoTime();
+            TickEntry entry;
+            while((entry = this.tickQueue.peek()) != null && entry.due - now <= 0){
+                this.tickQueue.poll();
+                CoreComponent comp = entry.comp;
+                if(comp.runningThread != this || comp.tickPeriodNanos <= 0 || comp.executionPaused){ // moved away, went back to free running or paused (resumeExecution puts it back)
+                    continue;
+                }
+                comp.scheduledStep(this.core, entry.due);
+                long end = System.nanoTime();
+                entry.due = comp.nextTickAfter(entry.due, now, end); // out of the heap while the key changes
+                this.tickQueue.add(entry);
+                now = end;
+            }
+            return entry == null ? Long.MAX_VALUE : entry.due - now;
+        }
+
+        public enum Lifecycle {
+            NEW,
+            RUNNING,
+            STOPPING, // finishing its current loop
+            STOPPED
+        }
+        private final AtomicReference<Lifecycle> lifecycle = new AtomicReference<>(Lifecycle.NEW);
+        private boolean runUpdates = true; // set before the thread starts
+
+        public Lifecycle getLifecycle(){
+            return this.lifecycle.get();
         }
 
         public void startRunning(){
-            this.run = true;
-            this.stoppedRunning = false;
-            this.start();
+            this.startRunning(true);
+        }
+
+        // runUpdates = false starts stepping right away without running update() on the attached components first,
+        // for components that were moved here already initialized (EngineCore.demoteComponent)
+        public void startRunning(boolean runUpdates){
+            this.runUpdates = runUpdates;
+            if(!this.lifecycle.compareAndSet(Lifecycle.NEW, Lifecycle.RUNNING)){
+                throw new IllegalStateException("Backing thread can only be started once: " + this.getName() + " is " + this.lifecycle.get());
+            }
+            if(this.virtual){
+                // uncaught exceptions go to the handler set on this object, same as a platform backing thread
+                this.executor = Thread.ofVirtual()
+                        .name(this.getName())
+                        .uncaughtExceptionHandler((Thread t, Throwable e) -> this.getUncaughtExceptionHandler().uncaughtException(this, e))
+                        .start(this);
+            }else{
+                this.start();
+            }
         }
-        private Boolean run = false;
-        private Boolean stoppedRunning = true;
         public void run(){
-            synchronized (this.attachedComponentStepIndex){
-                synchronized (this.pausedComponents){
-                	for(Map.Entry<String, Integer> e: this.attachedComponentStepIndex.entrySet()) { // weird bug where if an update needs a step function to run the whole thing halts, so the update runs on the specific thread
-                		core.getComponentFromName(e.getKey()).primitiveUpdate(core);
-                	}
+            try{
+                this.runLoop();
+            }finally{
+                this.lifecycle.set(Lifecycle.STOPPED);
+            }
+        }
+
+        private void runLoop(){
+            if(this.runUpdates){
+                for(CoreComponent comp: this.attached) { // weird bug where if an update needs a step function to run the whole thing halts, so the update runs on the specific thread
+                    try{
+                        comp.primitiveUpdate(core);
+                    }catch(Throwable e){
+                        core.supervisor.onFailure(comp, e); // restarting runs the update again
+                    }
                 }
             }
+            int idleCount = 0;
             while(true){
-                if(run){
-                    synchronized (this.attachedComponentStepIndex){
-                        synchronized (this.pausedComponents){
-                            double start = System.nanoTime();
-                            int index = 0;
-                            for(Consumer<Integer> cons: this.stepFuncs){
-                                cons.accept(0);
-                                /*
-                                if(!this.pausedComponents.contains(index)){
-
-                                }
-                                index += 1;
-                                 */
-                            }
-                            this.core.reportThreadLoopTime(Thread.currentThread().getName(), (System.nanoTime()-start)/1000000);
+                long loopStart = System.nanoTime();
+                if(this.lifecycle.get() == Lifecycle.RUNNING){
+                    this.signalled = false;
+                    this.workDone = false;
+                    this.freeRunning = 0;
+                    this.applyTickRateChanges();
+                    // no lock here, a step that blocks (console input, sockets, ...) doesn't hold up attach/detach
+                    // or pin the carrier of a virtual backing thread
+                    CoreComponent[] comps = this.attached;
+                    for(int i = 0; i < comps.length; i++){
+                        CoreComponent comp = comps[i];
+                        if(comp.executionPaused || comp.tickPeriodNanos > 0){
+                            continue; // paused, or stepped from the tick queue instead
+                        }
+                        if(comp.scheduledStep(this.core)){
+                            this.workDone = true;
+                        }
+                        if(!comp.isWaitingForSignal()){
+                            this.freeRunning += 1; // event driven components waiting for a signal don't need polling
                         }
                     }
                 }else{
-                    this.stoppedRunning = true;
                     break;
                 }
-                synchronized(this.stepNotifier) {
-                	this.stepNotifier.notifyAll();	
+                long untilNextTick = this.stepDueComponents();
+                this.recordLoopTime(System.nanoTime() - loopStart);
+                if(this.stepWaiters > 0){
+                    synchronized(this.stepNotifier) {
+                    	this.stepNotifier.notifyAll();	
+                    }
+                }
+                if(this.workDone || this.signalled){
+                    idleCount = 0;
+                    if(this.virtual){
+                        Thread.yield(); // a virtual thread that always has work would otherwise never give its carrier to the others
+                    }
+                }else if(this.freeRunning == 0 && untilNextTick != Long.MAX_VALUE){
+                    LockSupport.parkNanos(untilNextTick); // only timed components here, sleep until the next one is due
+                }else if(this.freeRunning == 0){
+                    LockSupport.park(this); // nothing to poll (event driven, paused or no components), sleep until wake()
+                }else{
+                    // nobody had work, back off (spin -> yield -> park) until woken, the backoff runs out or a timed component is due
+                    this.core.idleStrategy.idle(idleCount, untilNextTick);
+                    if(idleCount < Integer.MAX_VALUE){
+                        idleCount += 1;
+                    }
                 }
             }
         }
 
-        public void stopRunning(){
-            this.run = false;
-            // basically this func runs on the calling thread, which is usually the core.
-            // however, if this runs on the same thread as the this thread, it's gonna get caught forever.
-            // ex: current thread is T1(contains a comps named compA,compB). T1.run -> compA.step -> core.moveComponentToThread(compB, T2)-runs on T1 -> T1.deattachComponent(compB)-runs on T1 -> T1.stopRunning() -> hogs all execution time because it's still T1, and thus does not allow T1.run to finish the while loop and recheck the condition
-            // because the func runs on the calling func's thread, which in this example is the current thread.
+        // doesn't wait, the thread stops after the loop it's currently in
+        public void requestStop(){
+            if(!this.lifecycle.compareAndSet(Lifecycle.RUNNING, Lifecycle.STOPPING)){
+                this.lifecycle.compareAndSet(Lifecycle.NEW, Lifecycle.STOPPED); // never started, nothing to wait for
+            }
+            this.wake(); // in case it's parked
+        }
 
-            long loopOut = 0;
-            while(this.stoppedRunning != true && loopOut < 5000){loopOut += 1;} // fail safe in case the ^ex happens
+        // waits until the thread stopped, false if it's still running after the timeout.
+        // called from one of its own components (ex: the exit command) it can't wait for itself, it returns right away
+        // and the thread stops as soon as that step returns
+        public boolean awaitStopped(long timeoutMillis) throws InterruptedException{
+            if(this.lifecycle.get() == Lifecycle.STOPPED){
+                return true;
+            }
+            Thread ex = this.executor;
+            if(ex == Thread.currentThread()){
+                return true;
+            }
+            ex.join(Math.max(1, timeoutMillis));
+            return this.lifecycle.get() == Lifecycle.STOPPED;
+        }
+
+        public boolean stopRunning(long timeoutMillis){
+            this.requestStop();
+            try{
+                return this.awaitStopped(timeoutMillis);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        public boolean stopRunning(){
+            return this.stopRunning(this.core.shutdownDeadlineMillis);
         }
     }
 
@@ -188,6 +447,7 @@ public abstract class CoreComponent {
             this.active = active;
             /// is fixed now :)
             this.types = type;
+            this.priority = PriorityClass.of(type);
             this.core = core;
             this.settings = new ArrayList<CoreComponentSettings>();
             this.dependencies = dependencies;
@@ -246,8 +506,358 @@ public abstract class CoreComponent {
         return caca;
     }
 
+    private boolean idleReported = false;
+
+    // 0 means the component is stepped on every loop of its backing thread
+    private volatile long tickPeriodNanos = 0;
+    private volatile long tickOverruns = 0;
+
+    // steps the component at a fixed rate instead of on every loop. 0 goes back to every loop
+    public final void setTickRate(double hz){
+        if(Double.isNaN(hz) || hz < 0){
+            throw new IllegalArgumentException("Tick rate cannot be negative, component: " + this.name);
+        }
+        this.tickPeriodNanos = hz == 0 ? 0 : Math.max(1, (long) (1_000_000_000d / hz));
+        CoreComponentBackingThread th = this.runningThread;
+        if(th != null){
+            th.scheduleTickRateChange(this);
+        }
+    }
+
+    public final double getTickRate(){
+        long period = this.tickPeriodNanos;
+        return period == 0 ? 0 : 1_000_000_000d / period;
+    }
+
+    public final long getTickPeriodNanos(){
+        return this.tickPeriodNanos;
+    }
+
+    // how many times a step took longer than the tick period
+    public final long getTickOverruns(){
+        return this.tickOverruns;
+    }
+
+    // used by the schedulers after a timed step: counts overruns and returns when the component is due next
+    public final long nextTickAfter(long due, long stepStart, long stepEnd){
+        long period = this.tickPeriodNanos;
+        if(stepEnd - stepStart > period){
+            this.tickOverruns += 1;
+        }
+        long next = due + period; // fixed rate, not fixed delay
+        if(next - stepEnd <= 0){
+            next = stepEnd + period; // fell behind, skip the missed ticks instead of bursting through them
+        }
+        return next;
+    }
+
+    // call this from step() when the component had nothing to do.
+    // if every component on a backing thread reports idle the thread backs off instead of spinning
+    protected final void reportIdle(){
+        this.idleReported = true;
+    }
+
+    private final AtomicBoolean stepping = new AtomicBoolean(false);
+    private volatile Wakeable waker;
+    private volatile long stepNanos = 0;
+    // paused components stay attached but aren't stepped. the flag lives on the component
+    // so it survives moves between threads and thread restarts
+    private volatile boolean executionPaused = false;
+
+    public final void pauseExecution(){
+        this.executionPaused = true;
+    }
+
+    public final void resumeExecution(){
+        this.executionPaused = false;
+        CoreComponentBackingThread th = this.runningThread;
+        if(th != null && this.tickPeriodNanos > 0){
+            th.scheduleTickRateChange(this); // paused timed components are dropped from the tick queue
+        }
+        this.wake();
+    }
+
+    public final boolean isExecutionPaused(){
+        return this.executionPaused;
+    }
+
+    private static final int SUPERVISION_OK = 0;
+    private static final int SUPERVISION_RESTARTING = 1;
+    private static final int SUPERVISION_CIRCUIT_OPEN = 2;
+    private volatile int supervision = SUPERVISION_OK;
+    private volatile long restartAtNanos = 0;
+
+    // used by the Supervisor, the component is skipped until atNanos and then its update runs again
+    public final void scheduleRestart(long atNanos){
+        this.restartAtNanos = atNanos;
+        this.supervision = SUPERVISION_RESTARTING;
+    }
+
+    // used by the Supervisor, the component isn't stepped again until Supervisor.reset
+    public final void openCircuit(){
+        this.supervision = SUPERVISION_CIRCUIT_OPEN;
+    }
+
+    public final boolean isRestarting(){
+        return this.supervision == SUPERVISION_RESTARTING;
+    }
+
+    public final boolean isCircuitOpen(){
+        return this.supervision == SUPERVISION_CIRCUIT_OPEN;
+    }
+
+    // moving average of how long a step takes, used to balance components between threads
+    public final long getAverageStepNanos(){
+        return this.stepNanos;
+    }
+
+    private final LatencyHistogram stepLatency = new LatencyHistogram();
+
+    // step time percentiles over the last windowMillis (up to a minute)
+    public final LatencyHistogram.Snapshot getStepLatency(long windowMillis){
+        return this.stepLatency.snapshot(windowMillis * 1_000_000);
+    }
+
+    // used by the schedulers: steps the component and returns false if it reported idle.
+    // a component is never stepped by two threads at once, if it's already being stepped somewhere else this returns false right away
+    public final boolean scheduledStep(EngineCore core){
+        return this.scheduledStep(core, 0);
+    }
+
+    // readyAtNanos is when the component became due (its tick deadline), 0 if it's free running
+    public final boolean scheduledStep(EngineCore core, long readyAtNanos){
+        if(!this.stepping.compareAndSet(false, true)){
+            return false;
+        }
+        this.stepThread = Thread.currentThread();
+        long start = System.nanoTime();
+        this.stepStartNanos = start;
+        boolean stepped = false;
+        boolean busy = false;
+        int overruns = 0;
+        try{
+            if(this.supervision != SUPERVISION_OK){
+                if(this.supervision == SUPERVISION_CIRCUIT_OPEN || start - this.restartAtNanos < 0){
+                    return false; // down, or still backing off
+                }
+                this.primitiveUpdate(core); // restarting = running the init code again, on the thread that steps it
+                this.supervision = SUPERVISION_OK;
+                core.supervisor.onRestarted(this);
+                return true;
+            }
+            if(this.eventDriven){
+                if(!this.signalPending){
+                    return false;
+                }
+                this.signalPending = false; // cleared before stepping, a wake that arrives during the step gets another one
+            }
+            this.idleReported = false;
+            stepped = true;
+            this.stepCount += 1;
+            boolean answered = this.serveRequests();
+            this.step(core);
+            busy = answered || !this.idleReported;
+            return busy;
+        }catch(Throwable e){
+            core.supervisor.onFailure(this, e); // only this component goes down, the thread keeps stepping the others
+            return false;
+        }finally{
+            long end = System.nanoTime();
+            this.stepNanos += (end - start - this.stepNanos) >> 3;
+            this.cpuNanos += end - start;
+            // a component is runnable from its tick deadline, or right after a step that did work.
+            // anything after that until it actually steps is time spent waiting for the others
+            long readyAt = readyAtNanos != 0 ? readyAtNanos : this.lastBusyEndNanos;
+            if(stepped && readyAt != 0 && start - readyAt > 0){
+                long delay = start - readyAt;
+                this.delayTotalNanos += delay;
+                this.delayCount += 1;
+                if(delay > this.maxDelayNanos){
+                    this.maxDelayNanos = delay;
+                }
+            }
+            this.lastBusyEndNanos = busy ? end : 0;
+            this.stepThread = null; // before releasing, so a thread never sees itself here once its step is over
+            if(stepped){
+                this.stepLatency.record(end, end - start);
+                long budget = this.stepBudgetNanos;
+                // 25% slack, a component that checks shouldYield() returns a little after its budget ran out
+                if(budget > 0 && end - start > budget + (budget >> 2)){
+                    this.budgetOverruns += 1;
+                    overruns = ++this.consecutiveOverruns;
+                }else{
+                    this.consecutiveOverruns = 0;
+                }
+            }
+            this.stepping.set(false);
+            if(overruns > 0){
+                core.onStepBudgetOverrun(this, end - start, overruns);
+            }
+        }
+    }
+
+    private volatile PriorityClass priority = PriorityClass.NORMAL;
+
+    public final PriorityClass getPriority(){
+        return this.priority;
+    }
+
+    public final void setPriority(PriorityClass priority){
+        this.priority = Objects.requireNonNull(priority);
+        CoreComponentBackingThread th = this.runningThread;
+        if(th != null){
+            th.sortByPriority();
+        }
+    }
+
+    // only written by the thread stepping the component, read racily for stats
+    private long stepCount = 0;
+    private long cpuNanos = 0;
+    private long lastBusyEndNanos = 0;
+    private long delayTotalNanos = 0;
+    private long delayCount = 0;
+    private long maxDelayNanos = 0;
+
+    // how many times step() ran. the schedulers compare it around scheduledStep to tell a step that ran from one that
+    // was skipped (paused, event driven without a wake, restarting...)
+    public final long getStepCount(){
+        return this.stepCount;
+    }
+
+    public final long getCpuNanos(){
+        return this.cpuNanos;
+    }
+
+    public final long getSchedulingDelayTotalNanos(){
+        return this.delayTotalNanos;
+    }
+
+    public final long getSchedulingDelayCount(){
+        return this.delayCount;
+    }
+
+    public final long getMaxSchedulingDelayNanos(){
+        return this.maxDelayNanos;
+    }
+
+    private volatile long stepBudgetNanos = 0;
+    private long stepStartNanos = 0; // only touched by the thread stepping the component
+    private volatile int consecutiveOverruns = 0; // counted by the stepping thread, cleared by EngineCore after a demotion
+    private volatile long budgetOverruns = 0;
+
+    // how long one step is supposed to take at most, 0 for no budget. other components on the same thread wait
+    // while this one steps, so long running components should check shouldYield() and continue in the next step
+    public final void setStepBudget(long micros){
+        if(micros < 0){
+            throw new IllegalArgumentException("Step budget can't be negative: " + micros);
+        }
+        this.stepBudgetNanos = micros * 1000;
+    }
+
+    public final long getStepBudgetNanos(){
+        return this.stepBudgetNanos;
+    }
+
+    public final long getBudgetOverruns(){
+        return this.budgetOverruns;
+    }
+
+    // starts counting overruns in a row from 0 again. racing with a step that's ending at worst counts one more
+    public final void clearConsecutiveOverruns(){
+        this.consecutiveOverruns = 0;
+    }
+
+    // true once the current step used up its budget, call it from long running step() code and
+    // return (keeping whatever state is needed to continue) when it says so. costs one System.nanoTime()
+    protected final boolean shouldYield(){
+        long budget = this.stepBudgetNanos;
+        return budget > 0 && System.nanoTime() - this.stepStartNanos >= budget;
+    }
+
+    private volatile boolean eventDriven = false;
+    private volatile boolean signalPending = true; // so the first step always runs
+
+    // an event driven component only steps after a wake(): from an action it subscribed to with
+    // EngineCore.subscribeToAction(name, component, callback), a global variable it watches (EngineCore.watchGlobalVariable)
+    // or called directly. any number of wakes before the step runs end up as a single step, and while nothing
+    // wakes it the component costs nothing (its thread parks if nothing else on it needs polling).
+    // a tick rate still applies on top, so a timed event driven component steps at most once per tick
+    public final void setEventDriven(boolean eventDriven){
+        this.eventDriven = eventDriven;
+        this.wake();
+    }
+
+    public final boolean isEventDriven(){
+        return this.eventDriven;
+    }
+
+    private volatile boolean blocking = false;
+
+    // a component whose step can block for a long time (waiting for console input, a socket...). the modes that step
+    // components together in ticks (DEPENDENCY_WAVES, LOCKSTEP) run it on a thread of its own outside the ticks instead,
+    // so it doesn't hold every other component at the barrier. set it (or override isBlocking) before the engine starts
+    public final void setBlocking(boolean blocking){
+        this.blocking = blocking;
+    }
+
+    public boolean isBlocking(){
+        return this.blocking;
+    }
+
+    // true when the component can't do anything until it's woken, schedulers use it to sleep without a timeout
+    public final boolean isWaitingForSignal(){
+        return this.eventDriven && !this.signalPending && this.supervision == SUPERVISION_OK;
+    }
+
+    // set by whatever runs the component's steps, so wake() reaches it
+    public final void setWaker(Wakeable waker){
+        this.waker = waker;
+    }
+
+    // wakes whatever runs this component's steps, use it when the component got work from outside (actions, other threads)
+    public final void wake(){
+        this.signalPending = true;
+        Wakeable w = this.waker;
+        if(w != null){
+            w.wake();
+        }
+    }
+
+    // request actions this component answers (RequestAction.serve), their queued requests are handled right before every step
+    private volatile RequestAction<?, ?>[] servedRequests = new RequestAction[0];
+
+    public final synchronized void addServedRequests(RequestAction<?, ?> action){
+        RequestAction<?, ?>[] next = Arrays.copyOf(this.servedRequests, this.servedRequests.length + 1);
+        next[next.length - 1] = action;
+        this.servedRequests = next;
+    }
+
+    public final synchronized void removeServedRequests(RequestAction<?, ?> action){
+        RequestAction<?, ?>[] old = this.servedRequests;
+        for(int i = 0; i < old.length; i++){
+            if(old[i] == action){
+                RequestAction<?, ?>[] next = Arrays.copyOf(old, old.length - 1);
+                System.arraycopy(old, i + 1, next, i, old.length - i - 1);
+                this.servedRequests = next;
+                return;
+            }
+        }
+    }
+
+    private boolean serveRequests(){
+        RequestAction<?, ?>[] served = this.servedRequests;
+        boolean answered = false;
+        for(int i = 0; i < served.length; i++){
+            answered |= served[i].serveQueued(this);
+        }
+        return answered;
+    }
+
     public final void primitiveStep(EngineCore core){
         if(this.active){
+            this.stepCount += 1;
+            this.stepStartNanos = System.nanoTime(); // for shouldYield
+            this.serveRequests();
             this.step(core);
         }
     }
@@ -274,6 +884,24 @@ public abstract class CoreComponent {
     public final void primitiveExit(){
     	this.exit();
     }
+
+    private Thread stepThread = null; // who holds the step guard, only compared against the current thread
+
+    // used on shutdown: waits (until deadlineNanos) for the step that's running to finish, then runs exit() holding the
+    // step guard, so nothing steps the component while it exits or after. an exited component never steps again.
+    // returns false if it was still stepping at the deadline (exit() isn't called then)
+    public final boolean exitWhenIdle(long deadlineNanos){
+        if(this.stepThread != Thread.currentThread()){ // exiting from inside its own step (ex: the exit command) is fine
+            while(!this.stepping.compareAndSet(false, true)){
+                if(System.nanoTime() - deadlineNanos >= 0){
+                    return false;
+                }
+                LockSupport.parkNanos(100_000);
+            }
+        }
+        this.primitiveExit();
+        return true;
+    }
     protected void exit(){}
     
     public static ComponentType[] mergeComponentTypes(ComponentType single, ComponentType[] array) {
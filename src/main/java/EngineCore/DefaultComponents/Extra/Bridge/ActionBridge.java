@@ -0,0 +1,678 @@
+package EngineCore.DefaultComponents.Extra.Bridge;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import EngineCore.EngineCore;
+import EngineCore.TestingEnviromentCore;
+import EngineCore.Actions.Action;
+import EngineCore.Actions.ActionDataContainer;
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.Journal.ActionCodec;
+import EngineCore.Journal.BasicActionCodec;
+
+// shares actions between EngineCores in different processes on the same machine, over unix domain sockets.
+// every bridge listens on its own socket path. publish(names) sends those local actions to every peer that subscribed to them,
+// subscribe(peerPath, names) connects to another bridge and triggers the same named local actions whenever the peer's fire,
+// so components just subscribe to local actions and don't care which process triggers them.
+// an io thread owns the sockets: triggers of published actions are queued and everything queued since its last loop goes out
+// as one frame per peer (one write), incoming events are handed to the component, which triggers them on its own thread.
+// payloads are encoded with an ActionCodec (same as the journal). events a bridge received aren't sent out again by it, so two
+// processes can publish and subscribe the same action without looping (unless the action dispatches asynchronously)
+public class ActionBridge extends CoreComponent {
+    private static final byte SUBSCRIBE = 1; // name
+    private static final byte DEFINE = 2; // id, name. sent before the first event of a name on a connection
+    private static final byte EVENT = 3; // id, payload
+    // frame: int length of the rest, then records until that length. a record: byte type, then for SUBSCRIBE an int length
+    // and the name, for DEFINE an int id, an int length and the name, for EVENT an int id, an int length and the payload
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FRAME = 16 * 1024 * 1024;
+    public static final long RECONNECT_MILLIS = 1000;
+    // at most this many received events are triggered per step, the rest wait for the next one
+    public static final int MAX_EVENTS_PER_STEP = 1024;
+    // events kept per peer while its socket is full, past that they're dropped
+    public static final int MAX_BACKLOG = 64 * 1024;
+
+    private static final class Event {
+        final String name;
+        final Object value;
+
+        Event(String name, Object value){
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    // one connection, owned by the io thread
+    private final class Peer {
+        final SocketChannel channel;
+        final Path remote; // null for the peers that connected to us
+        final Set<String> subscribed = new HashSet<>(); // what they want from us
+        final HashMap<String, Integer> sentIds = new HashMap<>();
+        final HashMap<Integer, String> names = new HashMap<>();
+        final ArrayDeque<Event> backlog = new ArrayDeque<>(); // waiting for room in out, in order
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE); // filled from 0 up to position, grows for a record bigger than it
+        int frameStart = -1;
+
+        Peer(SocketChannel channel, Path remote){
+            this.channel = channel;
+            this.remote = remote;
+        }
+    }
+
+    public final Path socketPath;
+    public final ActionCodec codec;
+
+    private final Map<String, Consumer<ActionDataContainer>> published = new ConcurrentHashMap<>();
+    private final Map<Path, Set<String>> remotes = new ConcurrentHashMap<>(); // what we subscribe to, by peer
+    private final ConcurrentLinkedQueue<Path> remotesChanged = new ConcurrentLinkedQueue<>();
+    private final Map<String, Integer> demand = new ConcurrentHashMap<>(); // how many peers want each name
+    private final ConcurrentLinkedQueue<Event> outbox = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Event> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean ioWakePending = new AtomicBoolean(false);
+    private volatile Thread delivering = null;
+    private String deliveringName = null; // only read by the delivering thread
+
+    private volatile boolean running = false;
+    private volatile Selector selector;
+    private Thread ioThread;
+    private final ArrayList<Peer> peers = new ArrayList<>(); // io thread only
+    private final HashMap<Path, Long> reconnectAt = new HashMap<>(); // io thread only
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public ActionBridge(String name, Boolean active, EngineCore core, Path socketPath, ActionCodec codec){
+        super(name, active, core, ComponentType.CONNECTOR);
+        this.socketPath = socketPath;
+        this.codec = codec;
+    }
+
+    public ActionBridge(String name, Boolean active, EngineCore core, Path socketPath){
+        this(name, active, core, socketPath, new BasicActionCodec());
+    }
+
+    // sends every trigger of these local actions to the peers that subscribed to them (the actions don't have to exist yet)
+    public void publish(String... actionNames){
+        for(String n: actionNames){
+            this.published.computeIfAbsent(n, (String name) ->
+                    this.core.subscribeToAction(name, (ActionDataContainer data) -> this.send(name, data.getValue())));
+        }
+    }
+
+    public void unpublish(String... actionNames){
+        for(String n: actionNames){
+            Consumer<ActionDataContainer> callback = this.published.remove(n);
+            if(callback != null){
+                this.core.unsubscribeFromAction(n, callback);
+            }
+        }
+    }
+
+    // triggers the local actions with these names whenever the bridge listening on peerPath publishes them.
+    // missing local actions are created as plain actions, add them yourself first if you want them typed (addIntAction...)
+    public void subscribe(Path peerPath, String... actionNames){
+        for(String n: actionNames){
+            if(this.core.getActionFromName(n) == null){
+                this.core.addAction(n, (Object) null);
+            }
+        }
+        Set<String> names = this.remotes.computeIfAbsent(peerPath, (Path p) -> ConcurrentHashMap.newKeySet());
+        for(String n: actionNames){
+            names.add(n);
+        }
+        this.remotesChanged.add(peerPath);
+        this.wakeIo();
+    }
+
+    private void send(String actionName, Object value){
+        if(!this.running || !this.demand.containsKey(actionName)){
+            return; // nobody listens
+        }
+        if(this.delivering == Thread.currentThread() && actionName.equals(this.deliveringName)){
+            return; // the event we're delivering from a peer, don't echo it back
+        }
+        this.outbox.add(new Event(actionName, value));
+        this.wakeIo();
+    }
+
+    private void wakeIo(){
+        if(this.ioWakePending.compareAndSet(false, true)){ // one wakeup per io loop, not one per event
+            Selector s = this.selector;
+            if(s != null){
+                s.wakeup();
+            }
+        }
+    }
+
+    @Override
+    protected void step(EngineCore core){
+        int n = 0;
+        this.delivering = Thread.currentThread();
+        try{
+            Event e;
+            while(n < MAX_EVENTS_PER_STEP && (e = this.inbox.poll()) != null){
+                Action action = core.getActionFromName(e.name);
+                if(action != null){
+                    this.deliveringName = e.name;
+                    action.trigger(new ActionDataContainer<>(e.value));
+                }
+                n += 1;
+            }
+        }finally{
+            this.delivering = null;
+            this.deliveringName = null;
+        }
+        if(!this.inbox.isEmpty()){
+            this.wake();
+        }
+        if(n == 0){
+            this.reportIdle();
+        }
+    }
+
+    // starts listening. runs again when the supervisor restarts the component, the old sockets are closed first
+    @Override
+    protected void update(EngineCore core){
+        this.setEventDriven(true); // only steps when the io thread got events for it
+        this.stopIo();
+        try{
+            if(Files.exists(this.socketPath)){
+                SocketChannel probe = null;
+                try{
+                    probe = SocketChannel.open(UnixDomainSocketAddress.of(this.socketPath));
+                }catch(IOException stale){ // left behind by a process that died
+                    Files.deleteIfExists(this.socketPath);
+                }
+                if(probe != null){
+                    probe.close();
+                    throw new IllegalStateException("Another bridge is listening on " + this.socketPath);
+                }
+            }
+            Selector sel = Selector.open();
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(this.socketPath));
+            server.configureBlocking(false);
+            server.register(sel, SelectionKey.OP_ACCEPT);
+            this.remotesChanged.addAll(this.remotes.keySet());
+            this.selector = sel;
+            this.running = true;
+            this.ioThread = new Thread(() -> this.runIo(sel, server), "ActionBridge-io-" + this.name);
+            this.ioThread.setDaemon(true);
+            this.ioThread.start();
+        }catch(IOException e){
+            throw new IllegalStateException("Couldn't start the action bridge on " + this.socketPath, e);
+        }
+    }
+
+    @Override
+    protected void exit(){
+        this.stopIo();
+    }
+
+    private void stopIo(){
+        Thread th = this.ioThread;
+        if(th == null){
+            return;
+        }
+        this.running = false;
+        this.selector.wakeup();
+        // no timeout: the old thread deletes the socket file on its way out and shares peers/running with the next one,
+        // so it has to be gone before we bind again. it never blocks, the selector wakeup gets it out right away
+        boolean interrupted = false;
+        while(th.isAlive()){
+            try{
+                th.join();
+            }catch(InterruptedException e){
+                interrupted = true;
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+        this.ioThread = null;
+    }
+
+    private void runIo(Selector sel, ServerSocketChannel server){
+        try{
+            while(this.running){
+                this.ioWakePending.set(false); // before draining, so whatever is sent after this wakes the next select
+                this.connectRemotes();
+                this.drainOutbox();
+                long timeout = this.reconnectAt.isEmpty() ? 0 : RECONNECT_MILLIS;
+                if(this.outbox.isEmpty() && this.remotesChanged.isEmpty()){
+                    sel.select(timeout);
+                }else{
+                    sel.selectNow();
+                }
+                Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+                while(keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()){
+                        continue;
+                    }
+                    if(key.isAcceptable()){
+                        SocketChannel ch = server.accept();
+                        if(ch != null){
+                            ch.configureBlocking(false);
+                            Peer p = new Peer(ch, null);
+                            this.peers.add(p);
+                            ch.register(sel, SelectionKey.OP_READ, p);
+                        }
+                        continue;
+                    }
+                    Peer p = (Peer) key.attachment();
+                    try{
+                        if(key.isConnectable() && p.channel.finishConnect()){
+                            this.onConnected(p, key);
+                        }
+                        if(key.isValid() && key.isReadable()){
+                            this.read(p);
+                        }
+                        if(key.isValid() && key.isWritable()){
+                            this.flush(p);
+                            this.drainBacklog(p);
+                            this.closeFrame(p);
+                            this.flush(p);
+                        }
+                    }catch(IOException | RuntimeException e){ // peer went away or sent garbage, only that connection goes
+                        this.closePeer(p);
+                    }
+                }
+            }
+        }catch(IOException e){
+            this.core.reportError("bridge " + this.name, e);
+        }finally{
+            for(Peer p: new ArrayList<>(this.peers)){
+                this.closePeer(p);
+            }
+            this.reconnectAt.clear();
+            this.demand.clear();
+            this.outbox.clear();
+            try{
+                server.close();
+                sel.close();
+                Files.deleteIfExists(this.socketPath);
+            }catch(IOException e){
+                this.core.reportError("bridge " + this.name, e);
+            }
+        }
+    }
+
+    private void connectRemotes(){
+        Path changed;
+        while((changed = this.remotesChanged.poll()) != null){
+            Peer existing = this.findRemote(changed);
+            if(existing == null){
+                this.reconnectAt.put(changed, 0L);
+            }else if(existing.channel.isConnected()){ // already connected, just ask for the new names
+                this.appendSubscriptions(existing);
+                this.flushQuietly(existing);
+            }
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Long>> it = this.reconnectAt.entrySet().iterator();
+        while(it.hasNext()){
+            Map.Entry<Path, Long> due = it.next();
+            if(due.getValue() > now){
+                continue;
+            }
+            SocketChannel ch = null;
+            try{
+                ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+                ch.configureBlocking(false);
+                Peer p = new Peer(ch, due.getKey());
+                boolean connected = ch.connect(UnixDomainSocketAddress.of(due.getKey()));
+                SelectionKey key = ch.register(this.selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, p);
+                this.peers.add(p);
+                it.remove();
+                if(connected){
+                    this.onConnected(p, key);
+                }
+            }catch(IOException e){ // not up (yet), try again later
+                due.setValue(now + RECONNECT_MILLIS);
+                if(ch != null){
+                    try{
+                        ch.close();
+                    }catch(IOException ignored){}
+                }
+            }
+        }
+    }
+
+    private Peer findRemote(Path remote){
+        for(Peer p: this.peers){
+            if(remote.equals(p.remote)){
+                return p;
+            }
+        }
+        return null;
+    }
+
+    private void onConnected(Peer p, SelectionKey key) throws IOException{
+        key.interestOps(SelectionKey.OP_READ);
+        this.appendSubscriptions(p);
+        this.flush(p);
+    }
+
+    private void appendSubscriptions(Peer p){
+        Set<String> names = this.remotes.get(p.remote);
+        if(names == null){
+            return;
+        }
+        for(String n: names){
+            byte[] bytes = n.getBytes(StandardCharsets.UTF_8);
+            if(this.room(p, 5 + bytes.length)){
+                p.out.put(SUBSCRIBE).putInt(bytes.length).put(bytes);
+            }
+        }
+        this.closeFrame(p);
+    }
+
+    // everything queued since the last loop goes out as one frame per peer
+    private void drainOutbox(){
+        if(this.peers.isEmpty()){
+            this.outbox.clear();
+            return;
+        }
+        // a failed write closes its peer (and takes it out of peers) in the middle of the loops, so they go over a copy
+        Peer[] peers = this.peers.toArray(new Peer[0]);
+        for(Peer p: peers){
+            this.drainBacklog(p);
+        }
+        Event e;
+        while((e = this.outbox.poll()) != null){
+            for(Peer p: peers){
+                if(p.channel.isOpen() && p.subscribed.contains(e.name)){
+                    this.queue(p, e);
+                }
+            }
+        }
+        for(Peer p: peers){
+            if(p.channel.isOpen()){
+                this.closeFrame(p);
+                this.flushQuietly(p);
+            }
+        }
+    }
+
+    private void queue(Peer p, Event e){
+        if(p.backlog.isEmpty() && this.appendEvent(p, e)){
+            return;
+        }
+        if(p.backlog.size() >= MAX_BACKLOG){
+            this.dropped.increment();
+            return;
+        }
+        p.backlog.add(e);
+    }
+
+    private void drainBacklog(Peer p){
+        Event e;
+        while((e = p.backlog.peek()) != null && this.appendEvent(p, e)){
+            p.backlog.poll();
+        }
+    }
+
+    // false if there's no room for it right now. events that can never go out (codec failed, too big) count as dropped
+    private boolean appendEvent(Peer p, Event e){
+        Integer id = p.sentIds.get(e.name);
+        if(id == null){
+            byte[] bytes = e.name.getBytes(StandardCharsets.UTF_8);
+            if(!this.room(p, 9 + bytes.length)){
+                return false;
+            }
+            id = p.sentIds.size();
+            p.out.put(DEFINE).putInt(id).putInt(bytes.length).put(bytes);
+            p.sentIds.put(e.name, id);
+        }
+        int start = p.out.position();
+        try{
+            int size = this.codec.encodedSize(e.name, e.value);
+            if(9 + size > MAX_FRAME){ // a frame of its own would still be too big for the peer
+                this.dropped.increment();
+                return true;
+            }
+            if(!this.room(p, 9 + size)){
+                return false;
+            }
+            start = p.out.position();
+            p.out.put(EVENT).putInt(id).putInt(size);
+            this.codec.encode(e.name, e.value, p.out.slice(p.out.position(), size));
+            p.out.position(p.out.position() + size);
+            this.sent.increment();
+        }catch(RuntimeException ex){ // the codec failed, take back whatever it wrote
+            this.core.reportError("bridge " + this.name + " codec, action " + e.name, ex);
+            p.out.position(start);
+            this.dropped.increment();
+        }
+        return true;
+    }
+
+    // makes sure bytes (plus a frame header if no frame is open) fit in the peer's out buffer, writing out what's in it
+    // if needed. false if they don't fit (the peer doesn't keep up)
+    private boolean room(Peer p, int bytes){
+        if(p.out.remaining() >= bytes + (p.frameStart < 0 ? 4 : 0)){
+            this.openFrame(p);
+            return true;
+        }
+        this.closeFrame(p);
+        this.flushQuietly(p);
+        if(p.out.position() == 0 && bytes + 4 > p.out.capacity()){ // everything went out and it still doesn't fit
+            p.out = ByteBuffer.allocateDirect(Math.max(p.out.capacity() * 2, bytes + 4));
+        }
+        if(p.out.remaining() < bytes + 4){
+            return false;
+        }
+        this.openFrame(p);
+        return true;
+    }
+
+    private void openFrame(Peer p){
+        if(p.frameStart < 0){
+            p.frameStart = p.out.position();
+            p.out.putInt(0);
+        }
+    }
+
+    private void closeFrame(Peer p){
+        if(p.frameStart < 0){
+            return;
+        }
+        int length = p.out.position() - p.frameStart - 4;
+        if(length == 0){ // nothing went in
+            p.out.position(p.frameStart);
+        }else{
+            p.out.putInt(p.frameStart, length);
+        }
+        p.frameStart = -1;
+    }
+
+    private void flushQuietly(Peer p){
+        try{
+            this.flush(p);
+        }catch(IOException e){
+            this.closePeer(p);
+        }
+    }
+
+    // writes out whole frames only, an open frame stays in the buffer until it's closed
+    private void flush(Peer p) throws IOException{
+        if(!p.channel.isConnected()){
+            return;
+        }
+        int end = p.frameStart < 0 ? p.out.position() : p.frameStart;
+        if(end == 0){
+            return;
+        }
+        int filled = p.out.position();
+        p.out.position(0).limit(end);
+        p.channel.write(p.out);
+        int written = p.out.position();
+        p.out.limit(filled).position(written);
+        p.out.compact(); // what's left (and the open frame) moves to the front
+        if(p.frameStart >= 0){
+            p.frameStart -= written;
+        }
+        SelectionKey key = p.channel.keyFor(this.selector);
+        if(key != null && key.isValid()){
+            key.interestOps(written < end ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private void read(Peer p) throws IOException{
+        int n = p.channel.read(p.in);
+        if(n < 0){
+            throw new IOException("Peer closed the connection");
+        }
+        p.in.flip();
+        boolean got = false;
+        boolean grown = false;
+        while(p.in.remaining() >= 4){
+            int length = p.in.getInt(p.in.position());
+            if(length < 0 || length > MAX_FRAME){
+                throw new IOException("Bad frame length " + length);
+            }
+            if(p.in.remaining() < 4 + length){
+                if(4 + length > p.in.capacity()){ // bigger than the buffer, grow it for this frame
+                    ByteBuffer bigger = ByteBuffer.allocate(Math.max(p.in.capacity() * 2, 4 + length));
+                    bigger.put(p.in);
+                    p.in = bigger;
+                    grown = true;
+                }
+                break;
+            }
+            int end = p.in.position() + 4 + length;
+            p.in.position(p.in.position() + 4);
+            try{
+                while(p.in.position() < end){
+                    got |= this.readRecord(p, end);
+                }
+            }catch(BufferUnderflowException | IndexOutOfBoundsException e){
+                throw new IOException("Malformed frame", e);
+            }
+            p.in.position(end);
+        }
+        if(!grown){
+            p.in.compact();
+        }
+        if(got){
+            this.wake();
+        }
+    }
+
+    private boolean readRecord(Peer p, int end) throws IOException{
+        byte type = p.in.get();
+        if(type == SUBSCRIBE){
+            String name = this.readName(p, end);
+            if(p.subscribed.add(name)){
+                this.demand.merge(name, 1, Integer::sum);
+            }
+            return false;
+        }
+        int id = p.in.getInt();
+        if(type == DEFINE){
+            p.names.put(id, this.readName(p, end));
+            return false;
+        }
+        if(type != EVENT){
+            throw new IOException("Unknown record type " + type);
+        }
+        int size = p.in.getInt();
+        if(size < 0 || p.in.position() + size > end){
+            throw new IOException("Bad event size " + size);
+        }
+        String name = p.names.get(id);
+        if(name == null){
+            throw new IOException("Event for an undefined id " + id);
+        }
+        Object value = this.codec.decode(name, p.in.slice(p.in.position(), size));
+        p.in.position(p.in.position() + size);
+        this.received.increment();
+        if(value == ActionCodec.SKIP){
+            this.dropped.increment();
+            return false;
+        }
+        this.inbox.add(new Event(name, value));
+        return true;
+    }
+
+    private String readName(Peer p, int end) throws IOException{
+        int length = p.in.getInt();
+        if(length < 0 || p.in.position() + length > end){
+            throw new IOException("Bad name length " + length);
+        }
+        String name = new String(p.in.array(), p.in.arrayOffset() + p.in.position(), length, StandardCharsets.UTF_8);
+        p.in.position(p.in.position() + length);
+        return name;
+    }
+
+    private void closePeer(Peer p){
+        if(!this.peers.remove(p)){
+            return;
+        }
+        for(String n: p.subscribed){
+            this.demand.computeIfPresent(n, (String k, Integer v) -> v == 1 ? null : v - 1);
+        }
+        try{
+            p.channel.close();
+        }catch(IOException ignored){}
+        if(p.remote != null && this.running){
+            this.reconnectAt.put(p.remote, System.currentTimeMillis() + RECONNECT_MILLIS);
+        }
+    }
+
+    @Override
+    protected ArrayList<String> getStatus(){
+        ArrayList<String> res = super.getStatus();
+        res.add("socket: " + this.socketPath + (this.running ? "" : " (not listening)"));
+        res.add("published: " + this.published.keySet());
+        res.add("subscribed: " + this.remotes);
+        res.add("sent: " + this.sent.sum() + ", received: " + this.received.sum() + ", dropped: " + this.dropped.sum());
+        return res;
+    }
+
+    public long getSentCount(){
+        return this.sent.sum();
+    }
+
+    public long getReceivedCount(){
+        return this.received.sum();
+    }
+
+    // events that didn't make it: a peer that doesn't keep up, a codec that failed, payloads the codec can't decode
+    public long getDroppedCount(){
+        return this.dropped.sum();
+    }
+
+    @Override
+    protected int test(TestingEnviromentCore core){
+        return 0;
+    }
+}
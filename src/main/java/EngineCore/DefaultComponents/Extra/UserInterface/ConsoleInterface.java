@@ -29,7 +29,11 @@ public class ConsoleInterface extends UserInterface{
 	
 	public ConsoleInterface(Boolean active, EngineCore core) {
 		super("ConsoleInterface", active, core, ComponentType.CONSOLE_INTERFACE);
-		// TODO Auto-generated constructor stub
+	}
+
+	@Override
+	public boolean isBlocking() {
+		return true; // step waits for a line on stdin
 	}
 	
 
@@ -48,7 +52,7 @@ public class ConsoleInterface extends UserInterface{
 		System.out.print(PROMPT);
 		System.out.flush();
 
-		String line = s.nextLine(); // it is a blocking operation  but each comp runs on a seperate thread
+		String line = s.nextLine(); // it is a blocking operation  but each comp runs on a seperate thread (or virtual thread, see ExecutionMode.VIRTUAL_THREADS)
 		String[] splitLine = line.split(" ");
 		String com = splitLine[0];
 		ArrayList<String> args = new ArrayList<>();
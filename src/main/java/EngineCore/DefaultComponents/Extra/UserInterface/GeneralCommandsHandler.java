@@ -2,6 +2,7 @@ package EngineCore.DefaultComponents.Extra.UserInterface;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -10,6 +11,10 @@ import EngineCore.InstrumentationInterface;
 import EngineCore.TestingEnviromentCore;
 import EngineCore.DefaultComponents.ComponentType;
 import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.Threading.LatencyHistogram;
+import EngineCore.Threading.LoadBalancer;
+import EngineCore.Threading.PriorityClass;
+import EngineCore.Threading.Supervisor;
 
 public class GeneralCommandsHandler extends UserInterface implements CommandHandler{
 	// extends user interface so i can access the commands
@@ -20,7 +25,7 @@ public class GeneralCommandsHandler extends UserInterface implements CommandHand
 
 	@Override
 	public String[] getAllowedCommand() {
-		return new String[] {"help", "commands", "/?", "seeLoadedClasses", "threadsList", "componentList", "componentStatuses", "exit"};
+		return new String[] {"help", "commands", "/?", "seeLoadedClasses", "threadsList", "supervisor", "latencies", "rebalanceLog", "tickRates", "stepBudgets", "priorities", "componentList", "componentStatuses", "exit"};
 	}
 
 	public void handleCommand(String command, ResponseOutputStream out, String... args) {
@@ -76,13 +81,101 @@ public class GeneralCommandsHandler extends UserInterface implements CommandHand
 	    	p.println("-exclude <filter> <filter2> ...: excludes any classes with that full names start with <filter> or <filter2> ...");
 	    	p.println("-defaultFilters: exludes java,com,jdk,org,sun,[ from the list");
 	    }else if(command.equals("threadsList")) {
+	    	if(this.core.scheduler != null) {
+	    		p.println(this.core.scheduler.getStatus());
+	    	}
 	    	for(CoreComponentBackingThread th: this.core.threadsList) {
-	    		p.print(th.getName() + " -> ");
+	    		p.print(th.getName() + (th.runsOnVirtualThread() ? " (virtual)" : "") + " -> ");
 	    		for(String comp: th.getAttachedComponents()) {
 	    			p.print(comp + ", ");
 	    		}
 	    		p.println();
 	    	}
+	    }else if(command.equals("supervisor")) {
+	    	if(args.length == 2 && args[0].equals("-reset")) {
+	    		this.core.supervisor.reset(args[1]);
+	    	}
+	    	p.println("Thread restarts: " + this.core.supervisor.getThreadRestarts());
+	    	for(Supervisor.ComponentHealth h: this.core.supervisor.getHealth()) {
+	    		p.println(h);
+	    	}
+	    	p.println("Args: ");
+	    	p.println("-reset <component>: closes the component's circuit and restarts it");
+	    }else if(command.equals("latencies")) {
+	    	long window = 10_000;
+	    	if(args.length == 2 && args[0].equals("-window")) {
+	    		double seconds = -1;
+	    		try {
+	    			seconds = Double.parseDouble(args[1]);
+	    		}catch(NumberFormatException e) {}
+	    		if(seconds > 0 && !Double.isInfinite(seconds)) {
+	    			window = (long)(seconds * 1000);
+	    		}else {
+	    			p.println("Bad window, expected a number of seconds above 0: " + args[1]);
+	    		}
+	    	}
+	    	ArrayList<Map.Entry<String, LatencyHistogram.Snapshot>> entries = new ArrayList<>(this.core.getStepLatencies(window).entrySet());
+	    	entries.sort((a, b) -> Long.compare(b.getValue().p99Nanos, a.getValue().p99Nanos)); // slowest first
+	    	for(Map.Entry<String, LatencyHistogram.Snapshot> e: entries) {
+	    		p.println(e.getKey() + " -> " + e.getValue());
+	    	}
+	    	p.println("Args: ");
+	    	p.println("-window <seconds>: how far back to look, default 10, max 60");
+	    }else if(command.equals("rebalanceLog")) {
+	    	for(CoreComponentBackingThread th: this.core.threadsList) {
+	    		p.println(th.getName() + ": " + th.getLoopNanos() / 1000 + " us/loop");
+	    	}
+	    	for(LoadBalancer.Decision d: this.core.loadBalancer.getDecisions()) {
+	    		p.println(d);
+	    	}
+	    }else if(command.equals("tickRates")) {
+	    	for(CoreComponent comp: this.core.getAllComponents()) {
+	    		if(comp.getTickRate() > 0) {
+	    			p.println(comp.name + " -> " + comp.getTickRate() + " Hz, overruns: " + comp.getTickOverruns());
+	    		}
+	    	}
+	    }else if(command.equals("stepBudgets")) {
+	    	if(args.length == 2) {
+	    		CoreComponent comp = this.core.getComponentFromName(args[0]);
+	    		if(comp == null) {
+	    			p.println("Component not found: " + args[0]);
+	    		}else {
+	    			try {
+	    				comp.setStepBudget(Long.parseLong(args[1]));
+	    			}catch(IllegalArgumentException e) { // not a number, or negative
+	    				p.println("Bad step budget, expected microseconds >= 0: " + args[1]);
+	    			}
+	    		}
+	    	}
+	    	for(CoreComponent comp: this.core.getAllComponents()) {
+	    		if(comp.getStepBudgetNanos() > 0) {
+	    			p.println(comp.name + " -> budget: " + comp.getStepBudgetNanos() / 1000 + " us, overruns: " + comp.getBudgetOverruns());
+	    		}
+	    	}
+	    	p.println("Args: ");
+	    	p.println("<component> <micros>: sets the component's step budget, 0 removes it");
+	    }else if(command.equals("priorities")) {
+	    	if(args.length == 3 && args[0].equals("-set")) {
+	    		PriorityClass priority = null;
+	    		try {
+	    			priority = PriorityClass.valueOf(args[2].toUpperCase());
+	    		}catch(IllegalArgumentException e) {
+	    			p.println("Unknown priority class " + args[2] + ", valid ones: " + Arrays.toString(PriorityClass.values()));
+	    		}
+	    		if(priority != null && this.core.getComponentFromName(args[1]) == null) {
+	    			p.println("Component not found: " + args[1]);
+	    		}else if(priority != null) {
+	    			this.core.setComponentPriority(args[1], priority);
+	    		}
+	    	}
+	    	for(PriorityClass.Stats s: this.core.getPriorityStats().values()) {
+	    		p.println(s);
+	    	}
+	    	for(CoreComponent comp: this.core.getAllComponents()) {
+	    		p.println(comp.name + " -> " + comp.getPriority());
+	    	}
+	    	p.println("Args: ");
+	    	p.println("-set <component> <HIGH|NORMAL|LOW>: changes the component's priority class");
 	    }else if(command.equals("componentList")) {
 	    	for(CoreComponent comp: this.core.getAllComponents()) {
 	    		p.println(comp.name);
@@ -97,8 +190,7 @@ public class GeneralCommandsHandler extends UserInterface implements CommandHand
 	
 	@Override
 	protected void step(EngineCore core) {
-		// TODO Auto-generated method stub
-		
+		this.reportIdle(); // commands are handled on the caller's thread, nothing to do here
 	}
 
 	@Override
@@ -2,19 +2,46 @@ package EngineCore;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import EngineCore.Actions.Action;
 import EngineCore.Actions.ActionDataContainer;
+import EngineCore.Actions.ActionHandle;
+import EngineCore.Actions.ActionPipeline;
+import EngineCore.Actions.DoubleAction;
+import EngineCore.Actions.IntAction;
+import EngineCore.Actions.LongAction;
+import EngineCore.Actions.RequestAction;
 import EngineCore.DefaultComponents.ComponentType;
 import EngineCore.DefaultComponents.CoreComponent;
 import EngineCore.DefaultComponents.CoreComponent.CoreComponentBackingThread;
 import EngineCore.DefaultComponents.GlobalVariableContainer;
+import EngineCore.Journal.ActionJournal;
 import EngineCore.DefaultComponents.Extra.UserInterface.ConsoleInterface;
 import EngineCore.DefaultComponents.Extra.UserInterface.GeneralCommandsHandler;
+import EngineCore.Threading.ComponentScheduler;
+import EngineCore.Threading.ExecutionMode;
+import EngineCore.Threading.IdleStrategy;
+import EngineCore.Threading.LatencyHistogram;
+import EngineCore.Threading.LoadBalancer;
+import EngineCore.Threading.PriorityClass;
+import EngineCore.Threading.ShutdownReport;
+import EngineCore.Threading.Supervisor;
+import EngineCore.Threading.WaveScheduler;
+import EngineCore.Threading.WorkStealingScheduler;
 
 public class EngineCore {
 	// TODO: add exception throwing to the code
@@ -22,10 +49,15 @@ public class EngineCore {
 
     private Map<String, GlobalVariableContainer> globalVariables;
 
-    private ArrayList<Action> actions = new ArrayList<>();
+    // by name, actions are added and looked up from every thread
+    private final Map<String, Action> actions = new ConcurrentHashMap<>();
 
     public int threads = 5;
-    public ArrayList<CoreComponent.CoreComponentBackingThread> threadsList = new ArrayList<>();
+    // changed from the load balancer, the supervisor's thread restarts and demotions while everything runs, so it's a
+    // copy-on-write list underneath and iterating it always goes over a snapshot. changes that have to stay consistent with
+    // the attached components (moves, replacing a dead thread) also hold threadsLock. read it, don't replace or change it
+    public final List<CoreComponent.CoreComponentBackingThread> threadsList = new CopyOnWriteArrayList<>();
+    private final Object threadsLock = new Object();
 
     private boolean logInteractions = false;
 
@@ -54,40 +86,230 @@ public class EngineCore {
 
 
     public final ArrayList<Action> getAllActions(){
-        return this.actions;
+        return new ArrayList<>(this.actions.values());
     }
 
-    public final <T> void addAction(String actionName, T actionDataType, Consumer<ActionDataContainer>... defaultCallbacks){
-        if(this.getActionFromName(actionName) == null){
-            this.actions.add(new Action<T>(actionName, actionDataType, defaultCallbacks));
-        }
+    // does nothing if an action with that name already exists, returns a handle to whichever one is registered
+    public final <T> ActionHandle<T> addAction(String actionName, T actionDataType, Consumer<ActionDataContainer>... defaultCallbacks){
+        Action<T> res = this.actions.computeIfAbsent(actionName, (String n) -> this.registered(new Action<T>(n, actionDataType, defaultCallbacks)));
+        this.bindPendingSubscriptions(actionName, res);
+        return new ActionHandle<>(res);
     }
+
     public final Action getActionFromName(String name){
-        for(Action pl: this.actions){
-            if(Objects.equals(pl.name, name)){
-                return pl;
-            }
+        return name == null ? null : this.actions.get(name);
+    }
+
+    // primitive actions, triggering them with a value doesn't box (see IntAction). like addAction they do nothing if the
+    // action already exists, and return the registered one
+    public final IntAction addIntAction(String actionName, int defaultValue){
+        return this.addTypedAction(actionName, IntAction.class, (String n) -> new IntAction(n, defaultValue));
+    }
+
+    public final LongAction addLongAction(String actionName, long defaultValue){
+        return this.addTypedAction(actionName, LongAction.class, (String n) -> new LongAction(n, defaultValue));
+    }
+
+    public final DoubleAction addDoubleAction(String actionName, double defaultValue){
+        return this.addTypedAction(actionName, DoubleAction.class, (String n) -> new DoubleAction(n, defaultValue));
+    }
+
+    public final IntAction getIntAction(String actionName){
+        return this.getTypedAction(actionName, IntAction.class);
+    }
+
+    public final LongAction getLongAction(String actionName){
+        return this.getTypedAction(actionName, LongAction.class);
+    }
+
+    public final DoubleAction getDoubleAction(String actionName){
+        return this.getTypedAction(actionName, DoubleAction.class);
+    }
+
+    private <A extends Action> A addTypedAction(String actionName, Class<A> type, Function<String, A> create){
+        Action res = this.actions.computeIfAbsent(actionName, (String n) -> this.registered(create.apply(n)));
+        if(!type.isInstance(res)){
+            throw new IllegalArgumentException("Action " + actionName + " already exists and isn't a " + type.getSimpleName());
+        }
+        this.bindPendingSubscriptions(actionName, res);
+        return type.cast(res);
+    }
+
+    private <A extends Action> A getTypedAction(String actionName, Class<A> type){
+        Action res = this.getActionFromName(actionName);
+        if(res == null){
+            throw new IllegalArgumentException("Action not found: " + actionName);
+        }
+        if(!type.isInstance(res)){
+            throw new IllegalArgumentException("Action " + actionName + " isn't a " + type.getSimpleName());
+        }
+        return type.cast(res);
+    }
+
+    // records every action triggered from now on into journal (replay it with JournalReplayer).
+    // throws IllegalStateException if a journal is already running
+    public final synchronized void startJournal(ActionJournal journal){
+        if(this.journal != null){
+            throw new IllegalStateException("A journal is already recording the actions");
+        }
+        this.journal = journal;
+        journal.setErrorHandler(this::reportError);
+        for(Action action: this.actions.values()){
+            action.setJournal(journal);
         }
-        return null;
     }
 
-    private ArrayList<String> actionWaitingList = new ArrayList<>();
-    private ArrayList<Consumer<ActionDataContainer>> callbackWaitingList = new ArrayList<>();
+    // stops recording and closes the journal, returns it (null if none was running)
+    public final synchronized ActionJournal stopJournal(){
+        ActionJournal j = this.journal;
+        if(j == null){
+            return null;
+        }
+        this.journal = null;
+        for(Action action: this.actions.values()){
+            action.setJournal(null);
+        }
+        j.close();
+        return j;
+    }
+
+    public final ActionJournal getJournal(){
+        return this.journal;
+    }
+
+    private volatile ActionJournal journal = null;
+
+    // actions created while a journal runs are recorded too, and their subscribers' errors come here
+    private <A extends Action> A registered(A action){
+        action.setJournal(this.journal);
+        action.setErrorHandler(this::reportError);
+        return action;
+    }
+
+    // resolves the action once, trigger the returned handle directly instead of going through the name every time
+    public final <T> ActionHandle<T> getActionHandle(String actionName, Class<T> type){
+        Action action = this.getActionFromName(actionName);
+        if(action == null){
+            throw new IllegalArgumentException("Couldn't resolve action handle, action not found: " + actionName);
+        }
+        Object value = action.getContainer().getValue();
+        if(value != null && !type.isInstance(value)){
+            throw new IllegalArgumentException("Couldn't resolve action handle, " + actionName + " carries "
+                    + value.getClass().getName() + " not " + type.getName());
+        }
+        return new ActionHandle<T>(action);
+    }
+
+    // subscriptions to actions that don't exist yet, by action name. the lists are only touched inside the map's
+    // compute functions (so under the map's lock for that name), which is what makes binding them atomic:
+    // addAction registers the action first and then drains the name, a subscription checks for the action inside the
+    // same lock, so it either sees the action or lands in the list before the drain
+    private final Map<String, ArrayList<Consumer<ActionDataContainer>>> pendingSubscriptions = new ConcurrentHashMap<>();
 
-    public final void subscribeToAction(String actionName, Consumer<ActionDataContainer> callback){
+    private void bindPendingSubscriptions(String actionName, Action action){
+        this.pendingSubscriptions.computeIfPresent(actionName, (String n, ArrayList<Consumer<ActionDataContainer>> pending) -> {
+            for(Consumer<ActionDataContainer> callback: pending){
+                action.subscribe(callback);
+            }
+            return null;
+        });
+    }
+
+    // subscriptions still waiting for their action to be created
+    public final int getPendingSubscriptionCount(){
+        int[] res = {0};
+        for(String name: this.pendingSubscriptions.keySet()){
+            this.pendingSubscriptions.computeIfPresent(name, (String n, ArrayList<Consumer<ActionDataContainer>> pending) -> {
+                res[0] += pending.size();
+                return pending;
+            });
+        }
+        return res[0];
+    }
+
+    // returns the callback that got subscribed, pass it to unsubscribeFromAction to remove it again.
+    // if the action doesn't exist yet the subscription is bound as soon as addAction creates it
+    public final Consumer<ActionDataContainer> subscribeToAction(String actionName, Consumer<ActionDataContainer> callback){
         Action res = this.getActionFromName(actionName);
         if(res != null){
             res.subscribe(callback);
-        }else{
-            // action might have not been created yet
-            this.actionWaitingList.add(actionName);
-            this.callbackWaitingList.add(callback);
+            return callback;
+        }
+        this.pendingSubscriptions.compute(actionName, (String n, ArrayList<Consumer<ActionDataContainer>> pending) -> {
+            Action created = this.getActionFromName(n);
+            if(created != null){ // created in the meantime, its addAction already drained this name
+                created.subscribe(callback);
+                return pending;
+            }
+            if(pending == null){
+                pending = new ArrayList<>();
+            }
+            pending.add(callback);
+            return pending;
+        });
+        return callback;
+    }
+
+    // same as above, but wakes the subscribing component's backing thread after the callback ran
+    // so a component that reports idle picks the action up right away instead of after its backoff
+    public final Consumer<ActionDataContainer> subscribeToAction(String actionName, CoreComponent subscriber, Consumer<ActionDataContainer> callback){
+        return this.subscribeToAction(actionName, (ActionDataContainer data) -> {
+            callback.accept(data);
+            subscriber.wake();
+        });
+    }
+
+    // callback has to be the one subscribeToAction returned, false if it wasn't subscribed
+    public final boolean unsubscribeFromAction(String actionName, Consumer<ActionDataContainer> callback){
+        Action res = this.getActionFromName(actionName);
+        if(res != null){
+            return res.unsubscribe(callback);
         }
+        boolean[] removed = {false};
+        this.pendingSubscriptions.computeIfPresent(actionName, (String n, ArrayList<Consumer<ActionDataContainer>> pending) -> {
+            for(int i = 0; i < pending.size(); i++){ // still waiting for the action to be created
+                if(pending.get(i) == callback){
+                    pending.remove(i);
+                    removed[0] = true;
+                    break;
+                }
+            }
+            return pending.isEmpty() ? null : pending;
+        });
+        if(!removed[0]){ // the action might have been created while we looked
+            Action created = this.getActionFromName(actionName);
+            return created != null && created.unsubscribe(callback);
+        }
+        return true;
+    }
+
+    // operators between this action and another one, see ActionPipeline. e.g.
+    // core.pipeAction("mouseMoved").throttle(16).into(core.getActionFromName("redraw"))
+    @SuppressWarnings("unchecked")
+    public final <T> ActionPipeline<T> pipeAction(String actionName){
+        Action<T> action = this.getActionFromName(actionName);
+        if(action == null){
+            throw new IllegalArgumentException("Action not found: " + actionName);
+        }
+        return ActionPipeline.from(action);
     }
 
     public final void connectActions(String actionA, String actionB){
         Action firstAction = this.getActionFromName(actionA);
         Action secondAction = this.getActionFromName(actionB);
+        // same primitive type on both ends, pass the value straight through without boxing
+        if(firstAction instanceof IntAction && secondAction instanceof IntAction){
+            ((IntAction) firstAction).subscribeValue(((IntAction) secondAction)::trigger);
+            return;
+        }
+        if(firstAction instanceof LongAction && secondAction instanceof LongAction){
+            ((LongAction) firstAction).subscribeValue(((LongAction) secondAction)::trigger);
+            return;
+        }
+        if(firstAction instanceof DoubleAction && secondAction instanceof DoubleAction){
+            ((DoubleAction) firstAction).subscribeValue(((DoubleAction) secondAction)::trigger);
+            return;
+        }
         if(firstAction.getContainer().getValue().getClass() == secondAction.getContainer().getValue().getClass()){
             firstAction.subscribe((ActionDataContainer) -> {
                 secondAction.trigger((ActionDataContainer) ActionDataContainer);
@@ -100,6 +322,33 @@ public class EngineCore {
     }
 
 
+    // request/reply actions, see RequestAction. created on first use from either side, so it doesn't matter
+    // whether the responder or the requesters come up first
+    private final Map<String, RequestAction> requestActions = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public final <Q, R> RequestAction<Q, R> getRequestAction(String actionName){
+        return this.requestActions.computeIfAbsent(actionName, (String n) -> new RequestAction<>(n));
+    }
+
+    // handler runs on responder's thread, right before its step. throws IllegalStateException if someone already serves it
+    public final <Q, R> RequestAction<Q, R> serveRequests(String actionName, CoreComponent responder, Function<Q, R> handler){
+        RequestAction<Q, R> action = this.getRequestAction(actionName);
+        action.serve(responder, handler);
+        return action;
+    }
+
+    public final boolean stopServingRequests(String actionName, CoreComponent responder){
+        RequestAction action = this.requestActions.get(actionName);
+        return action != null && action.stopServing(responder);
+    }
+
+    // doesn't block, the future completes on the responder's thread (or fails with a TimeoutException after timeoutMillis)
+    public final <Q, R> CompletableFuture<R> request(String actionName, Q value, long timeoutMillis){
+        return this.<Q, R>getRequestAction(actionName).request(value, timeoutMillis);
+    }
+
+
     //                                              -- GLOBAL VARIABLES
 
 
@@ -109,6 +358,26 @@ public class EngineCore {
         }else{
             this.globalVariables.put(name, new GlobalVariableContainer(instance));
         }
+        CopyOnWriteArrayList<CoreComponent> watchers = this.globalVariableWatchers.get(name);
+        if(watchers != null){
+            for(CoreComponent comp: watchers){
+                comp.wake();
+            }
+        }
+    }
+
+    // components woken whenever a global variable is set, see CoreComponent.setEventDriven
+    private final Map<String, CopyOnWriteArrayList<CoreComponent>> globalVariableWatchers = new ConcurrentHashMap<>();
+
+    public final void watchGlobalVariable(String name, CoreComponent watcher){
+        this.globalVariableWatchers.computeIfAbsent(name, (String n) -> new CopyOnWriteArrayList<>()).addIfAbsent(watcher);
+    }
+
+    public final void unwatchGlobalVariable(String name, CoreComponent watcher){
+        CopyOnWriteArrayList<CoreComponent> watchers = this.globalVariableWatchers.get(name);
+        if(watchers != null){
+            watchers.remove(watcher);
+        }
     }
 
     public final <T> T getGlobalVariable(String name, Class<T> caster){
@@ -135,37 +404,12 @@ public class EngineCore {
     //                                              -- COMPONENTS
 
 
-    private String compsToString(ArrayList<CoreComponent> in){
-        String res = "";
-        for(CoreComponent comp:  in){
-            res += comp.name;
-        }
-        return res;
-    }
+    // puts every component after the components it depends on (the same layering the DEPENDENCY_WAVES mode runs)
     public final void reorderComponents(){
-        ArrayList<String> history = new ArrayList<>();
-        while(true){
-            for(CoreComponent comp : this.components){
-                for(CoreComponent mata : this.components){
-                    if(this.components.indexOf(comp) < this.components.indexOf(mata)){
-                        for(ComponentType tip : comp.dependencies){
-                            for(ComponentType mataType: mata.types){
-                                if(mataType.name() == tip.name()){
-                                    this.components.remove(mata);
-                                    this.components.add(this.components.indexOf(comp), mata);
-                                    if(history.contains(this.components)){
-                                        throw new IllegalArgumentException("CoreComponents circular dependency, check dependencies");
-                                    }else{
-                                        history.add(this.compsToString(this.components));
-                                    }
-                                    continue; // DO NOT REMOVE.
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            break;
+        CoreComponent[][] waves = WaveScheduler.compileWaves(this.components);
+        this.components.clear();
+        for(CoreComponent[] wave: waves){
+            this.components.addAll(Arrays.asList(wave));
         }
     }
 
@@ -304,20 +548,30 @@ public class EngineCore {
     //                      -- THREADING
 
 
-    protected Map<String, Double> threadLoopTimes = new HashMap<>();
+    // loop times reported from outside the backing threads, the backing threads keep their own (see getThreadLoopTimes)
+    protected Map<String, Double> threadLoopTimes = new ConcurrentHashMap<>();
     public void reportThreadLoopTime(String threadID, double ms){
         this.threadLoopTimes.put(threadID, ms);
     }
 
+    // last loop time of every thread in ms
+    public Map<String, Double> getThreadLoopTimes(){
+        Map<String, Double> res = new HashMap<>(this.threadLoopTimes);
+        for(CoreComponent.CoreComponentBackingThread th: this.threadsList){
+            res.put(th.getName(), th.getLoopTiming().lastLoopNanos / 1_000_000d);
+        }
+        return res;
+    }
+
     public CoreComponent.CoreComponentBackingThread createNewThread(){
-        CoreComponent.CoreComponentBackingThread toReturn = new CoreComponent.CoreComponentBackingThread(this);
+        CoreComponent.CoreComponentBackingThread toReturn = new CoreComponent.CoreComponentBackingThread(this, this.executionMode == ExecutionMode.VIRTUAL_THREADS);
         this.threadsList.add(toReturn);
         return toReturn;
     }
 
     public void addComponentToThread(String componentName, String threadName){
         for(CoreComponent.CoreComponentBackingThread thread : this.threadsList){
-            if(thread.getName() == threadName){
+            if(thread.getName().equals(threadName)){
                 thread.attachComponent(this.getComponentFromName(componentName));
             }
         }
@@ -332,17 +586,162 @@ public class EngineCore {
         return null;
     }
 
+    public void setComponentTickRate(String componentName, double hz){
+        CoreComponent comp = this.getComponentFromName(componentName);
+        if(comp == null){
+            throw new IllegalArgumentException("Couldn't set tick rate, component not found: " + componentName);
+        }
+        comp.setTickRate(hz);
+    }
+
+    // consecutive step budget overruns after which a component is moved to a thread of its own, 0 to never move them.
+    // only applies when components run on backing threads (THREADED, VIRTUAL_THREADS)
+    public int demoteAfterOverruns = 0;
+
+    // demotions run here instead of on the backing thread that noticed the overrun, so that thread goes straight back
+    // to stepping its other components. the thread only exists while there's something to demote
+    private final ThreadPoolExecutor control = newControlExecutor();
+
+    private static ThreadPoolExecutor newControlExecutor(){
+        ThreadPoolExecutor res = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (Runnable r) -> {
+            Thread th = new Thread(r, "EngineCore-control");
+            th.setDaemon(true);
+            return th;
+        });
+        res.allowCoreThreadTimeOut(true);
+        return res;
+    }
+    private final Set<CoreComponent> pendingDemotions = ConcurrentHashMap.newKeySet();
+
+    // called on the thread that stepped the component, right after a step that went over the component's budget
+    public void onStepBudgetOverrun(CoreComponent comp, long tookNanos, int consecutive){
+        long overruns = comp.getBudgetOverruns();
+        if(Long.bitCount(overruns) == 1){ // 1st, 2nd, 4th, 8th... so a component that's always over doesn't flood the log
+            System.out.println("Component " + comp.name + " went over its step budget: " + tookNanos / 1000 + " us, budget "
+                    + comp.getStepBudgetNanos() / 1000 + " us (" + overruns + " overruns)");
+        }
+        // >= so a demotion that didn't happen (thread not running yet...) is tried again on the next overrun
+        if(this.demoteAfterOverruns > 0 && consecutive >= this.demoteAfterOverruns && this.pendingDemotions.add(comp)){
+            this.control.execute(() -> {
+                try{
+                    if(this.demoteComponent(comp)){
+                        comp.clearConsecutiveOverruns(); // alone on its thread now, another demotion wouldn't do anything
+                        System.out.println("Component " + comp.name + " moved to its own thread after "
+                                + this.demoteAfterOverruns + " step budget overruns in a row");
+                    }
+                }catch(RuntimeException e){
+                    this.reportError("demotion of " + comp.name, e);
+                }finally{
+                    this.pendingDemotions.remove(comp);
+                }
+            });
+        }
+    }
+
+    // gives the component a backing thread of its own so it stops holding up the components it shared a thread with.
+    // the new thread starts with the component already attached and doesn't run its update again.
+    // false if it wasn't moved (not on a running backing thread, or already alone on one)
+    public boolean demoteComponent(CoreComponent comp){
+        synchronized(this.threadsLock){ // stopExecution takes it too, so a thread stopping now can't get a new one next to it
+            CoreComponent.CoreComponentBackingThread current = this.getComponentBackingThread(comp.name);
+            if(current == null || current.getLifecycle() != CoreComponentBackingThread.Lifecycle.RUNNING
+                    || current.getAttachedComponentInstances().length < 2){
+                return false;
+            }
+            CoreComponent.CoreComponentBackingThread newThread = this.createNewThread();
+            newThread.setUncaughtExceptionHandler((t, e) -> {
+                this.handleThreadException((CoreComponentBackingThread)t, e);
+            });
+            current.deattachComponent(comp);
+            newThread.attachComponent(comp);
+            newThread.startRunning(false);
+            return true;
+        }
+    }
+
+    public void setComponentPriority(String componentName, PriorityClass priority){
+        CoreComponent comp = this.getComponentFromName(componentName);
+        if(comp == null){
+            throw new IllegalArgumentException("Couldn't set priority, component not found: " + componentName);
+        }
+        comp.setPriority(priority);
+    }
+
+    // cpu share and scheduling delay of every priority class since the components started
+    public Map<PriorityClass, PriorityClass.Stats> getPriorityStats(){
+        int[] count = new int[PriorityClass.values().length];
+        long[] cpu = new long[count.length];
+        long[] delayTotal = new long[count.length];
+        long[] delays = new long[count.length];
+        long[] maxDelay = new long[count.length];
+        long totalCpu = 0;
+        for(CoreComponent comp: this.components){
+            int c = comp.getPriority().ordinal();
+            count[c] += 1;
+            cpu[c] += comp.getCpuNanos();
+            delayTotal[c] += comp.getSchedulingDelayTotalNanos();
+            delays[c] += comp.getSchedulingDelayCount();
+            maxDelay[c] = Math.max(maxDelay[c], comp.getMaxSchedulingDelayNanos());
+            totalCpu += comp.getCpuNanos();
+        }
+        Map<PriorityClass, PriorityClass.Stats> res = new EnumMap<>(PriorityClass.class);
+        for(PriorityClass p: PriorityClass.values()){
+            int c = p.ordinal();
+            res.put(p, new PriorityClass.Stats(p, count[c], cpu[c], totalCpu == 0 ? 0 : (double) cpu[c] / totalCpu,
+                    delays[c] == 0 ? 0 : delayTotal[c] / delays[c], maxDelay[c]));
+        }
+        return res;
+    }
+
+    // step time percentiles of every component that stepped in the last windowMillis (up to a minute)
+    public Map<String, LatencyHistogram.Snapshot> getStepLatencies(long windowMillis){
+        Map<String, LatencyHistogram.Snapshot> res = new HashMap<>();
+        for(CoreComponent comp: this.components){
+            LatencyHistogram.Snapshot s = comp.getStepLatency(windowMillis);
+            if(s.count > 0){
+                res.put(comp.name, s);
+            }
+        }
+        return res;
+    }
+
+    public Map<String, Long> getTickOverruns(){
+        Map<String, Long> res = new HashMap<>();
+        for(CoreComponent comp: this.components){
+            if(comp.getTickRate() > 0){
+                res.put(comp.name, comp.getTickOverruns());
+            }
+        }
+        return res;
+    }
+
+    // works in every execution mode, the paused flag lives on the component
     public void pauseComponentExecution(String componentName){
-        this.getComponentBackingThread(componentName).pauseComponentExecution(componentName);
+        CoreComponent comp = this.getComponentFromName(componentName);
+        if(comp == null){
+            throw new IllegalArgumentException("Couldn't pause component, not found: " + componentName);
+        }
+        comp.pauseExecution();
     }
 
     public void resumeComponentExecution(String componentName){
-        this.getComponentBackingThread(componentName).resumeComponentExecution(componentName);
+        CoreComponent comp = this.getComponentFromName(componentName);
+        if(comp == null){
+            throw new IllegalArgumentException("Couldn't resume component, not found: " + componentName);
+        }
+        comp.resumeExecution();
     }
 
+    // moves are serialized, so two of them (load balancer, demotion) can't both detach the same component
     public void moveComponentToThread(CoreComponent comp, String newThreadName){
-        this.getComponentBackingThread(comp.name).deattachComponent(comp);
-        this.addComponentToThread(comp.name, newThreadName);
+        synchronized(this.threadsLock){
+            CoreComponent.CoreComponentBackingThread current = this.getComponentBackingThread(comp.name);
+            if(current == null){
+                throw new IllegalArgumentException("Couldn't move component, it isn't on a backing thread: " + comp.name);
+            }
+            current.deattachComponent(comp);
+            this.addComponentToThread(comp.name, newThreadName);
+        }
     }
 
 
@@ -354,6 +753,9 @@ public class EngineCore {
     
     public boolean debugMode = false;
 
+    // used by the backing threads when none of their components had work
+    public IdleStrategy idleStrategy = new IdleStrategy();
+
     public void enableDebugging(){
         this.debugMode = true;
         this.logInteractions = true;
@@ -362,30 +764,88 @@ public class EngineCore {
     public void init(){this.update();} // the same
     
     public boolean oneThreadPerComponent = false;
+
+    // THREADED mode only: HIGH priority components get this many backing threads of their own (at max thread priority)
+    // instead of sharing the regular ones, 0 to mix them with everything else
+    public int highPriorityThreads = 0;
+
+    public ExecutionMode executionMode = ExecutionMode.THREADED;
+    // set in the modes that don't use backing threads (WORK_STEALING, DEPENDENCY_WAVES, LOCKSTEP), threadsList stays empty then
+    public ComponentScheduler scheduler = null;
+    // LOCKSTEP only, 0 = as many ticks as the components allow
+    public double ticksPerSecond = 0;
+
+    // THREADED mode only: periodically moves components off the busiest backing thread, see LoadBalancer
+    public boolean autoRebalance = false;
+    public LoadBalancer loadBalancer = new LoadBalancer(this);
+
+    // restarts components that throw, see Supervisor
+    public Supervisor supervisor = new Supervisor(this);
+
+    private volatile ErrorHandler errorHandler = ErrorHandler.PRINT;
+
+    // where the exceptions nobody can catch go (components, subscribers, the journal...), null = print them again
+    public final void setErrorHandler(ErrorHandler handler){
+        this.errorHandler = handler == null ? ErrorHandler.PRINT : handler;
+    }
+
+    public final void reportError(String source, Throwable error){
+        try{
+            this.errorHandler.onError(source, error);
+        }catch(RuntimeException e){ // a broken handler still shouldn't lose the error
+            ErrorHandler.PRINT.onError(source, error);
+            ErrorHandler.PRINT.onError("the error handler", e);
+        }
+    }
     
     
     public void update(){
+        this.checkNotExited();
         this.reorderComponents(); // just to be safe 
-        if(this.oneThreadPerComponent) {
+        this.stopExecution(new ShutdownReport("update", this.shutdownDeadlineMillis)); // whatever is still running from before
+        if(this.executionMode == ExecutionMode.WORK_STEALING){
+            this.scheduler = new WorkStealingScheduler(this, this.threads);
+        }else if(this.executionMode == ExecutionMode.DEPENDENCY_WAVES){
+            this.scheduler = new WaveScheduler(this, this.threads);
+        }else if(this.executionMode == ExecutionMode.LOCKSTEP){
+            WaveScheduler lockstep = new WaveScheduler(this, this.threads, true);
+            lockstep.setTicksPerSecond(this.ticksPerSecond);
+            this.scheduler = lockstep;
+        }
+        if(this.scheduler != null){
+            if(this.logInteractions){
+                this.logInteraction("Core updated");
+            }
+            return;
+        }
+        if(this.oneThreadPerComponent || this.executionMode == ExecutionMode.VIRTUAL_THREADS) {
         	this.threads = this.components.size();
         }
-        this.threadsList.clear();
-        for(int i = 0; i < this.threads; i++){
-            this.createNewThread();
+        ArrayList<CoreComponent> shared = this.components;
+        if(this.highPriorityThreads > 0 && this.executionMode == ExecutionMode.THREADED && !this.oneThreadPerComponent){
+            ArrayList<CoreComponent> high = new ArrayList<>();
+            shared = new ArrayList<>();
+            for(CoreComponent comp: this.components){
+                (comp.getPriority() == PriorityClass.HIGH ? high : shared).add(comp);
+            }
+            ArrayList<CoreComponent.CoreComponentBackingThread> highThreads = new ArrayList<>();
+            for(int i = 0; i < Math.min(this.highPriorityThreads, high.size()); i++){
+                CoreComponent.CoreComponentBackingThread th = this.createNewThread();
+                th.setPriority(Thread.MAX_PRIORITY);
+                th.setDedicated(true);
+                highThreads.add(th);
+            }
+            this.assignRoundRobin(high, highThreads);
         }
-        int threadNr = 0;
-        for(CoreComponent comp: this.components){
-            this.threadsList.get(threadNr).attachComponent(comp);
-            if(threadNr >= this.threads-1){
-                threadNr = 0;
-            }else{
-                threadNr += 1;
-            };
+        ArrayList<CoreComponent.CoreComponentBackingThread> sharedThreads = new ArrayList<>();
+        for(int i = 0; i < this.threads; i++){
+            sharedThreads.add(this.createNewThread());
         }
+        this.assignRoundRobin(shared, sharedThreads);
         if(this.debugMode){
             String toPrint = "";
             for(CoreComponent.CoreComponentBackingThread th: this.threadsList){
-                toPrint += th.getName() + " - " + th.attachedComponentStepIndex.keySet().toString() + "\n";
+                toPrint += th.getName() + " - " + Arrays.toString(th.getAttachedComponents()) + "\n";
             }
         }
         if(this.logInteractions){
@@ -394,36 +854,68 @@ public class EngineCore {
 
     }
 
+    private void assignRoundRobin(ArrayList<CoreComponent> comps, ArrayList<CoreComponent.CoreComponentBackingThread> threads){
+        int threadNr = 0;
+        for(CoreComponent comp: comps){
+            threads.get(threadNr).attachComponent(comp);
+            if(threadNr >= threads.size()-1){
+                threadNr = 0;
+            }else{
+                threadNr += 1;
+            };
+        }
+    }
+
     public void start(){
+        this.checkNotExited();
+        if(this.scheduler != null){
+            this.scheduler.start(this.components);
+            return;
+        }
         for(CoreComponent.CoreComponentBackingThread th : this.threadsList){
             th.startRunning();
             th.setUncaughtExceptionHandler((t, e) -> {
                 this.handleThreadException((CoreComponentBackingThread)t, e);
             });
         }
+        if(this.autoRebalance && this.executionMode == ExecutionMode.THREADED){
+            this.loadBalancer.start();
+        }
     }
     
+    // component exceptions don't get here (the supervisor restarts just the component), this is for the thread itself dying.
+    // only the dead thread is replaced, the other threads keep running untouched
     protected void handleThreadException(CoreComponentBackingThread t, Throwable e) {
-    	e.printStackTrace();
-    	// TODO: add a error/logging system to properly log the thread's exception
-    	this.threadsList.remove(t);
-    	String[] attachedComponents = t.getAttachedComponents();
-    	String[] pausedComponents = t.getPausedComponents();
-    	CoreComponentBackingThread newThread = this.createNewThread();
-    	for(String c: attachedComponents) { // re-attach the components to the new thread
-    		newThread.attachComponent(this.getComponentFromName(c));
+    	this.reportError("thread " + t.getName(), e);
+    	if(this.shuttingDown) {
+    		return; // it was stopping anyway
     	}
-    	for(String c: pausedComponents) { // re-pause the components to the new thread
-    		newThread.pauseComponentExecution(c);
+    	CoreComponentBackingThread newThread;
+    	synchronized(this.threadsLock) { // nothing moves components off the dead thread while they're carried over
+    		this.threadsList.remove(t);
+    		newThread = this.createNewThread();
+    		newThread.setDedicated(t.isDedicated());
+    		newThread.setPriority(t.getPriority());
+    		for(CoreComponent c: t.getAttachedComponentInstances()) { // re-attach the components to the new thread, paused ones stay paused
+    			newThread.attachComponent(c);
+    		}
     	}
-    	newThread.startRunning();
     	newThread.setUncaughtExceptionHandler((tt, ee) -> {
             this.handleThreadException((CoreComponentBackingThread)tt, ee);
         });
-    	this.update();
+    	newThread.startRunning();
+    	this.supervisor.onThreadRestarted();
     	System.out.println("Thread restarted ");
     }
     
+    // the global tick in DEPENDENCY_WAVES and LOCKSTEP mode, -1 in the other modes
+    public long getTick(){
+        if(this.scheduler instanceof WaveScheduler){
+            return ((WaveScheduler) this.scheduler).getTicks();
+        }
+        return -1;
+    }
+
     public void step(){
     	// should not use anymore bcauze the components are automatically stepped by their backing thread
     	// if you want to manually step the components by the main thread, you have to either
@@ -437,13 +929,10 @@ public class EngineCore {
             // that don't check if they should be active or not
             this.components.get(i).primitiveStep(this);
         }
-        for(Map.Entry<String, Double> pair: this.threadLoopTimes.entrySet()){
+        for(Map.Entry<String, Double> pair: this.getThreadLoopTimes().entrySet()){
         //  ----------- this.getGlobalVariable("Telemetry", Telemetry.class).addData(pair.getKey(),pair.getValue() + " ms");
         }
         //((UI_Manager)this.getComponentFromName("UI_Manager")).refresh();
-        if(!this.actionWaitingList.isEmpty()){
-            this.subscribeToAction(this.actionWaitingList.remove(0), this.callbackWaitingList.remove(0));
-        }
 
     }
 
@@ -466,21 +955,109 @@ public class EngineCore {
         return toReturn;
     }
 
+    // how long exit()/restart() may take in total, whatever is still running after that is reported and left behind
+    public long shutdownDeadlineMillis = 5000;
+    private volatile boolean shuttingDown = false; // set by exit() for good, the exited components hold their step guard
+    private volatile ShutdownReport lastShutdownReport = null;
+
+    public ShutdownReport getLastShutdownReport(){
+        return this.lastShutdownReport;
+    }
+
+    // stops the backing threads/scheduler and waits for them (until the report's deadline), components aren't exited.
+    // false if something was still running at the deadline
+    private boolean stopExecution(ShutdownReport report){
+        boolean clean = true;
+        synchronized(this.threadsLock){
+            for(CoreComponent.CoreComponentBackingThread thread: this.threadsList){
+                thread.requestStop(); // all of them first so they stop in parallel
+            }
+        }
+        try{
+            for(CoreComponent.CoreComponentBackingThread thread: this.threadsList){
+                if(!thread.awaitStopped(report.remainingMillis())){
+                    report.addStraggler(thread.getName());
+                    clean = false;
+                }
+            }
+            report.phaseDone("stop threads");
+            if(this.scheduler != null){
+                this.scheduler.stop();
+                if(!this.scheduler.awaitStopped(report.remainingMillis())){
+                    report.addStraggler(this.executionMode + " scheduler");
+                    clean = false;
+                }
+                this.scheduler = null;
+            }
+            report.phaseDone("stop scheduler");
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            report.addStraggler("interrupted while waiting");
+            clean = false;
+        }
+        this.threadsList.clear();
+        return clean;
+    }
+
+    // stops every thread and exits the components in reverse dependency order (consumers before what they depend on),
+    // all within shutdownDeadlineMillis. called from a component's step (ex: the exit command) that component's thread
+    // stops as soon as the step returns
     public void exit(){
-    	System.out.print("Running threads: ");
-    	for(Thread thread: Thread.getAllStackTraces().keySet()) {
-    		System.out.print(thread.getName() + ", ");
-    	}
-    	System.out.println();
-        for(CoreComponent.CoreComponentBackingThread thread: this.threadsList){
-            thread.stopRunning();
-            System.out.println("Stopped thread: " + thread.getName());
+        ShutdownReport report = new ShutdownReport("exit", this.shutdownDeadlineMillis);
+        this.shuttingDown = true;
+        this.loadBalancer.stop();
+        report.phaseDone("stop load balancer");
+        this.stopExecution(report);
+        for(Action action: this.actions.values()){
+            if(!action.dispatchSync(report.remainingMillis())){
+                report.addStraggler("action dispatcher " + action.name);
+            }
         }
-        for(CoreComponent comp : this.components){
-            comp.primitiveExit();
-            System.out.println("Component exited: " + comp.name);
+        report.phaseDone("drain async actions");
+        CoreComponent[][] waves = WaveScheduler.compileWaves(this.components);
+        for(int w = waves.length - 1; w >= 0; w--){
+            for(CoreComponent comp: waves[w]){
+                if(comp.exitWhenIdle(report.getDeadlineNanos())){
+                    System.out.println("Component exited: " + comp.name);
+                }else{
+                    report.addStraggler(comp.name); // still stepping, exiting it now would run exit() during a step
+                }
+            }
+        }
+        report.phaseDone("exit components");
+        this.stopJournal(); // after the components, what they trigger while exiting is recorded too
+        report.phaseDone("close journal");
+        report.finish();
+        this.lastShutdownReport = report;
+        System.out.println(report);
+    }
+
+    // stops and restarts every thread/scheduler (update() runs again on every component), within shutdownDeadlineMillis
+    // for the stopping part
+    public ShutdownReport restart(){
+        this.checkNotExited();
+        ShutdownReport report = new ShutdownReport("restart", this.shutdownDeadlineMillis);
+        this.loadBalancer.stop();
+        report.phaseDone("stop load balancer");
+        this.stopExecution(report);
+        this.update();
+        report.phaseDone("update");
+        this.start();
+        report.phaseDone("start");
+        report.finish();
+        this.lastShutdownReport = report;
+        return report;
+    }
+
+    public boolean hasExited(){
+        return this.shuttingDown;
+    }
+
+    // an exited component never steps again (see CoreComponent.exitWhenIdle), so an engine can't be brought back after exit()
+    private void checkNotExited(){
+        if(this.shuttingDown){
+            throw new IllegalStateException("The engine has exited, create a new one instead of restarting it");
         }
-        Thread.currentThread().interrupt();
     }
 
     public ArrayList<String> testComponents(){
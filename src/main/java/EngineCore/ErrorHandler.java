@@ -0,0 +1,14 @@
+package EngineCore;
+
+// gets the exceptions that have nobody to be thrown back to: a failing component, a subscriber on a dispatcher thread,
+// a codec, the journal, the bridge's io thread... source says where it came from (ex: "component db", "action chat").
+// set one with EngineCore.setErrorHandler to send them to your own logging, the default prints them
+@FunctionalInterface
+public interface ErrorHandler {
+    void onError(String source, Throwable error);
+
+    ErrorHandler PRINT = (String source, Throwable error) -> {
+        System.err.println("Error in " + source + ":");
+        error.printStackTrace();
+    };
+}
@@ -0,0 +1,24 @@
+package EngineCore.Journal;
+
+import java.nio.ByteBuffer;
+
+// turns action payloads into journal bytes and back. the journal asks for the size first so it can claim exactly that
+// much room in the segment, then encode writes straight into the mapped file
+public interface ActionCodec {
+    // returned by decode for payloads that can't be turned back into a value, the replayer skips those
+    Object SKIP = new Object();
+
+    int encodedSize(String actionName, Object value);
+
+    // out is a slice of exactly encodedSize bytes, position 0
+    void encode(String actionName, Object value, ByteBuffer out);
+
+    // in holds exactly what encode wrote, position 0
+    Object decode(String actionName, ByteBuffer in);
+
+    // human readable payload for reading journals, also for payloads decode can't turn back into a value
+    default String describe(String actionName, ByteBuffer in){
+        Object value = this.decode(actionName, in);
+        return value == SKIP ? "<" + in.capacity() + " bytes>" : String.valueOf(value);
+    }
+}
@@ -0,0 +1,355 @@
+package EngineCore.Journal;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import EngineCore.ErrorHandler;
+
+// records every triggered action (EngineCore.startJournal) into memory mapped segment files in a directory, read them back
+// with JournalReplayer. appending doesn't lock: a writer claims its bytes with a getAndAdd on the segment's position,
+// writes the record straight into the mapping and publishes it by writing its length last (release store), so a reader
+// never sees half a record. the writer whose claim runs past the end of the segment closes it and maps the next one,
+// writers that land past it wait for that (only during rotation). a background thread maps the next segment ahead of time
+// and touches every page of it, so writers don't pay for creating files or for page faults.
+// action names are journaled as a DEFINE record and referred to by id after that. every segment has its own defines, written
+// right before the first event of each name in it, so a segment can be read without the ones before it and old segments
+// can be deleted (maxSegments)
+public final class ActionJournal {
+    static final int MAGIC = 0x414A4E4C; // "AJNL"
+    static final int VERSION = 1;
+    // segment header: magic, version, epochMillis (wall clock time at timestamp 0), reserved
+    static final int SEGMENT_HEADER = 32;
+    // record: int length (padded, 0 = not written yet, -1 = end of segment), int action id, long timestamp nanos,
+    // int payload length, byte type, 3 padding bytes, then the payload. records are 8 byte aligned so the length can be
+    // written with a release store
+    static final int RECORD_HEADER = 24;
+    static final int END_OF_SEGMENT = -1;
+    static final byte TYPE_EVENT = 1;
+    static final byte TYPE_DEFINE = 2;
+    static final byte TYPE_PADDING = 3; // a record whose payload couldn't be encoded, readers skip it
+    static final String SEGMENT_PREFIX = "actions-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final int PAGE_SIZE = 4096;
+    static final VarHandle LENGTH = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final class Segment {
+        final int index;
+        final Path path;
+        final MappedByteBuffer buffer;
+        final AtomicInteger claimed = new AtomicInteger(SEGMENT_HEADER);
+        final Map<Name, Boolean> defined = new ConcurrentHashMap<>(); // names whose define is in this segment
+
+        Segment(int index, Path path, MappedByteBuffer buffer){
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    public final Path directory;
+    public final ActionCodec codec;
+    public final int segmentSize;
+    public final int maxSegments;
+
+    private final long epochMillis;
+    private final long originNanos;
+    // an action name and its id, looked up once per append
+    private static final class Name {
+        final String name;
+        final int id;
+        final int defineLength; // the whole DEFINE record, header and padding included
+
+        Name(String name, int id){
+            this.name = name;
+            this.id = id;
+            this.defineLength = (RECORD_HEADER + BasicActionCodec.utf8Length(name) + 7) & ~7;
+        }
+    }
+
+    private final Map<String, Name> names = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile Segment current;
+    private final AtomicReference<Segment> prepared = new AtomicReference<>(); // the next segment, already mapped and touched
+    private final AtomicInteger nextIndex;
+    private final Thread pretoucher;
+    private final ArrayDeque<Path> oldSegments = new ArrayDeque<>(); // rotations can overlap, lock it
+    private volatile boolean closed = false;
+    private final LongAdder recorded = new LongAdder(); // adders, a shared counter would be one more contended cache line per trigger
+    private final LongAdder dropped = new LongAdder();
+    private volatile ErrorHandler errors = ErrorHandler.PRINT; // EngineCore.startJournal sets its own
+
+    // segmentSize is rounded up to a multiple of 8, maxSegments = 0 keeps every segment
+    public ActionJournal(Path directory, ActionCodec codec, int segmentSize, int maxSegments) throws IOException{
+        if(segmentSize < SEGMENT_HEADER + RECORD_HEADER * 16){
+            throw new IllegalArgumentException("Journal segments need to be at least " + (SEGMENT_HEADER + RECORD_HEADER * 16) + " bytes");
+        }
+        if(maxSegments < 0){
+            throw new IllegalArgumentException("maxSegments can't be negative");
+        }
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentSize = (segmentSize + 7) & ~7;
+        this.maxSegments = maxSegments;
+        this.epochMillis = System.currentTimeMillis();
+        this.originNanos = System.nanoTime();
+        Files.createDirectories(directory);
+        int last = 0;
+        for(Path p: listSegments(directory)){ // a new run goes after whatever is in there already
+            last = Math.max(last, segmentIndex(p));
+            this.oldSegments.add(p);
+        }
+        this.nextIndex = new AtomicInteger(last + 1);
+        this.current = this.mapSegment(this.nextIndex.getAndIncrement());
+        this.pretoucher = new Thread(this::pretouch, "ActionJournal-pretoucher");
+        this.pretoucher.setDaemon(true);
+        this.pretoucher.start();
+    }
+
+    public ActionJournal(Path directory) throws IOException{
+        this(directory, new BasicActionCodec(), 64 * 1024 * 1024, 0);
+    }
+
+    // called from Action.trigger, on the triggering thread
+    public void append(String actionName, Object value){
+        if(this.closed){
+            return;
+        }
+        Name name = this.names.get(actionName);
+        if(name == null){
+            name = this.names.computeIfAbsent(actionName, (String n) -> new Name(n, this.nextId.getAndIncrement()));
+        }
+        int payload;
+        try{
+            payload = this.codec.encodedSize(actionName, value);
+        }catch(Throwable e){
+            this.errors.onError("journal codec, action " + actionName, e);
+            this.dropped.increment();
+            return;
+        }
+        if(this.write(name, value, payload)){
+            this.recorded.increment();
+        }else{
+            this.dropped.increment();
+        }
+    }
+
+    private boolean write(Name name, Object value, int payload){
+        int length = (RECORD_HEADER + payload + 7) & ~7;
+        if(name.defineLength + length > this.segmentSize - SEGMENT_HEADER){ // would never fit next to its define
+            return false;
+        }
+        long timestamp = System.nanoTime() - this.originNanos;
+        while(true){
+            Segment seg = this.current;
+            if(seg == null){ // closed
+                return false;
+            }
+            if(seg.claimed.get() > this.segmentSize){ // full, someone is switching to the next one
+                Thread.yield(); // not a busy spin, the rotating writer might need this core
+                continue;
+            }
+            if(seg.defined.get(name) == null && !this.define(seg, name, timestamp)){
+                continue; // the segment filled up, the define goes into the next one
+            }
+            int start = seg.claimed.getAndAdd(length);
+            if(this.fits(seg, start, length)){
+                return this.writeRecord(seg.buffer, start, length, TYPE_EVENT, name.id, timestamp, name.name, value, payload);
+            }
+        }
+    }
+
+    // writes the name's define into seg unless it's there already, false if seg ran out of room first.
+    // computeIfAbsent holds back everyone else appending that name until the define is claimed, so none of their
+    // events can land in front of it
+    private boolean define(Segment seg, Name name, long timestamp){
+        return seg.defined.computeIfAbsent(name, (Name n) -> {
+            int start = seg.claimed.getAndAdd(n.defineLength);
+            if(!this.fits(seg, start, n.defineLength)){
+                return null; // not defined here
+            }
+            this.writeRecord(seg.buffer, start, n.defineLength, TYPE_DEFINE, n.id, timestamp, n.name, null, BasicActionCodec.utf8Length(n.name));
+            return Boolean.TRUE;
+        }) != null;
+    }
+
+    // true if the claim at start fits in seg. the first claim past the end closes the segment and switches to the next one
+    private boolean fits(Segment seg, int start, int length){
+        if(start + length <= this.segmentSize){
+            return true;
+        }
+        if(start <= this.segmentSize){ // first claim past the end, this writer rotates
+            if(start + 4 <= this.segmentSize){
+                LENGTH.setRelease(seg.buffer, start, END_OF_SEGMENT);
+            }
+            this.rotate(seg);
+        }
+        return false;
+    }
+
+    // false if the codec failed, the record is published as padding then
+    private boolean writeRecord(ByteBuffer buf, int start, int length, byte type, int id, long timestamp, String actionName, Object value, int payload){
+        buf.putInt(start + 4, id);
+        buf.putLong(start + 8, timestamp);
+        buf.putInt(start + 16, payload);
+        try{
+            ByteBuffer out = buf.slice(start + RECORD_HEADER, payload);
+            if(type == TYPE_DEFINE){
+                BasicActionCodec.putUtf8(out, actionName);
+            }else{
+                this.codec.encode(actionName, value, out);
+            }
+            buf.put(start + 20, type);
+        }catch(Throwable e){ // the room is claimed either way, it still has to be published so readers can skip it
+            this.errors.onError("journal codec, action " + actionName, e);
+            buf.put(start + 20, TYPE_PADDING);
+            type = TYPE_PADDING;
+        }
+        LENGTH.setRelease(buf, start, length);
+        return type != TYPE_PADDING;
+    }
+
+    private void rotate(Segment full){
+        Segment next = this.prepared.getAndSet(null);
+        if(next != null && next.index < full.index){ // prepared before we had to map one ourselves, it would be read out of order
+            discard(next);
+            next = null;
+        }
+        if(next == null){ // the pretoucher is behind, map it here
+            try{
+                next = this.mapSegment(this.nextIndex.getAndIncrement());
+            }catch(IOException e){
+                this.errors.onError("journal", e);
+                this.closed = true;
+                this.current = null; // can't go on, the writers waiting on this segment give up
+                return;
+            }
+        }
+        LockSupport.unpark(this.pretoucher);
+        synchronized(this.oldSegments){ // the next rotation can start as soon as current is published
+            this.oldSegments.add(full.path); // no force() here, the OS writes the pages back on its own and nobody should wait for a disk flush
+        }
+        this.current = this.closed ? null : next;
+        synchronized(this.oldSegments){
+            while(this.maxSegments > 0 && this.oldSegments.size() >= this.maxSegments){
+                Path oldest = this.oldSegments.peek();
+                try{
+                    Files.deleteIfExists(oldest);
+                    this.oldSegments.poll();
+                }catch(IOException e){ // still mapped somewhere (windows), try again on the next rotation
+                    break;
+                }
+            }
+        }
+    }
+
+    private void pretouch(){
+        while(!this.closed){
+            if(this.prepared.get() == null){
+                try{
+                    Segment seg = this.mapSegment(this.nextIndex.getAndIncrement());
+                    for(int i = PAGE_SIZE; i < this.segmentSize; i += PAGE_SIZE){ // the first page got the header already
+                        seg.buffer.put(i, (byte) 0);
+                    }
+                    this.prepared.set(seg);
+                }catch(IOException e){ // rotations map the segments themselves from now on
+                    this.errors.onError("journal pretoucher", e);
+                    return;
+                }
+            }
+            LockSupport.park(this);
+        }
+        Segment unused = this.prepared.getAndSet(null);
+        if(unused != null){
+            discard(unused);
+        }
+    }
+
+    private static void discard(Segment seg){
+        try{
+            Files.deleteIfExists(seg.path);
+        }catch(IOException e){ // still mapped (windows), an empty segment doesn't hurt readers
+        }
+    }
+
+    private Segment mapSegment(int index) throws IOException{
+        Path path = this.directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, VERSION);
+            buf.putLong(8, this.epochMillis);
+            return new Segment(index, path, buf);
+        }
+    }
+
+    // stops recording, flushes the current segment. appends after this are ignored.
+    // waits for the pretoucher to delete the segment it prepared, so the directory doesn't change after this returns
+    public void close(){
+        this.closed = true;
+        LockSupport.unpark(this.pretoucher);
+        Segment seg = this.current;
+        this.current = null;
+        if(seg != null){
+            seg.buffer.force();
+        }
+        try{
+            this.pretoucher.join(1000);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isClosed(){
+        return this.closed;
+    }
+
+    public void setErrorHandler(ErrorHandler errors){
+        this.errors = errors == null ? ErrorHandler.PRINT : errors;
+    }
+
+    public long getRecordedCount(){
+        return this.recorded.sum();
+    }
+
+    // events that couldn't be journaled (codec failed, too big for a segment, journal closed while writing)
+    public long getDroppedCount(){
+        return this.dropped.sum();
+    }
+
+    static ArrayList<Path> listSegments(Path directory) throws IOException{
+        ArrayList<Path> res = new ArrayList<>();
+        if(!Files.isDirectory(directory)){
+            return res;
+        }
+        try(Stream<Path> files = Files.list(directory)){
+            files.filter((Path p) -> {
+                String n = p.getFileName().toString();
+                return n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX);
+            }).forEach(res::add);
+        }
+        res.sort((Path a, Path b) -> Integer.compare(segmentIndex(a), segmentIndex(b)));
+        return res;
+    }
+
+    static int segmentIndex(Path segment){
+        String n = segment.getFileName().toString();
+        return Integer.parseInt(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,157 @@
+package EngineCore.Journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// the default codec: null, boxed primitives, String and byte[] round trip. anything else is journaled as its toString()
+// so it still shows up when reading the journal, but replays skip it (write your own codec for those types)
+public class BasicActionCodec implements ActionCodec {
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte FLOAT = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte STRING = 6;
+    private static final byte BYTES = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte CHAR = 10;
+    private static final byte TEXT_ONLY = 15;
+
+    @Override
+    public int encodedSize(String actionName, Object value){
+        if(value == null){
+            return 1;
+        }
+        if(value instanceof Integer || value instanceof Float){
+            return 5;
+        }
+        if(value instanceof Long || value instanceof Double){
+            return 9;
+        }
+        if(value instanceof Boolean || value instanceof Byte){
+            return 2;
+        }
+        if(value instanceof Short || value instanceof Character){
+            return 3;
+        }
+        if(value instanceof String){
+            return 1 + utf8Length((String) value);
+        }
+        if(value instanceof byte[]){
+            return 1 + ((byte[]) value).length;
+        }
+        return 1 + utf8Length(String.valueOf(value));
+    }
+
+    @Override
+    public void encode(String actionName, Object value, ByteBuffer out){
+        if(value == null){
+            out.put(NULL);
+        }else if(value instanceof Integer){
+            out.put(INT).putInt((Integer) value);
+        }else if(value instanceof Long){
+            out.put(LONG).putLong((Long) value);
+        }else if(value instanceof Double){
+            out.put(DOUBLE).putDouble((Double) value);
+        }else if(value instanceof Float){
+            out.put(FLOAT).putFloat((Float) value);
+        }else if(value instanceof Boolean){
+            out.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+        }else if(value instanceof Byte){
+            out.put(BYTE).put((Byte) value);
+        }else if(value instanceof Short){
+            out.put(SHORT).putShort((Short) value);
+        }else if(value instanceof Character){
+            out.put(CHAR).putChar((Character) value);
+        }else if(value instanceof String){
+            out.put(STRING);
+            putUtf8(out, (String) value);
+        }else if(value instanceof byte[]){
+            out.put(BYTES).put((byte[]) value);
+        }else{
+            out.put(TEXT_ONLY);
+            putUtf8(out, String.valueOf(value));
+        }
+    }
+
+    @Override
+    public Object decode(String actionName, ByteBuffer in){
+        byte tag = in.get();
+        switch(tag){
+            case NULL: return null;
+            case INT: return in.getInt();
+            case LONG: return in.getLong();
+            case DOUBLE: return in.getDouble();
+            case FLOAT: return in.getFloat();
+            case BOOLEAN: return in.get() != 0;
+            case BYTE: return in.get();
+            case SHORT: return in.getShort();
+            case CHAR: return in.getChar();
+            case STRING: return getUtf8(in);
+            case BYTES: {
+                byte[] res = new byte[in.remaining()];
+                in.get(res);
+                return res;
+            }
+            default: return SKIP;
+        }
+    }
+
+    @Override
+    public String describe(String actionName, ByteBuffer in){
+        if(in.get(0) == TEXT_ONLY){
+            return getUtf8(in.position(1));
+        }
+        return ActionCodec.super.describe(actionName, in);
+    }
+
+    // sizing and writing the string by hand instead of getBytes(), so a journaled string isn't encoded (and allocated) twice
+    static int utf8Length(String s){
+        int len = 0;
+        for(int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if(c < 0x80){
+                len += 1;
+            }else if(c < 0x800){
+                len += 2;
+            }else if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))){
+                len += 4;
+                i += 1;
+            }else{
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    static void putUtf8(ByteBuffer out, String s){
+        for(int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if(c < 0x80){
+                out.put((byte) c);
+            }else if(c < 0x800){
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }else if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))){
+                int cp = Character.toCodePoint(c, s.charAt(i + 1));
+                i += 1;
+                out.put((byte) (0xF0 | (cp >> 18)));
+                out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            }else{ // lone surrogates end up as 3 bytes here, the decoder turns them into U+FFFD
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static String getUtf8(ByteBuffer in){
+        byte[] bytes = new byte[in.remaining()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,149 @@
+package EngineCore.Journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import EngineCore.EngineCore;
+import EngineCore.Actions.Action;
+import EngineCore.Actions.ActionDataContainer;
+
+// reads back what an ActionJournal wrote to a directory: read() goes through every record (for looking at an incident),
+// replay() triggers the recorded actions on a core (an EngineCore or a TestingEnviromentCore) in the same order.
+// read a journal once it's closed, a record that was still being written is where reading its segment stops
+public class JournalReplayer {
+    public static class Record {
+        public final String actionName;
+        public final long timestampNanos; // wall clock, nanos since the epoch
+        public final Object value; // ActionCodec.SKIP if the codec couldn't decode it
+        private final ByteBuffer payload;
+        private final ActionCodec codec;
+
+        Record(String actionName, long timestampNanos, Object value, ByteBuffer payload, ActionCodec codec){
+            this.actionName = actionName;
+            this.timestampNanos = timestampNanos;
+            this.value = value;
+            this.payload = payload;
+            this.codec = codec;
+        }
+
+        // the payload as text, see ActionCodec.describe
+        public String describe(){
+            return this.codec.describe(this.actionName, this.payload.duplicate());
+        }
+
+        @Override
+        public String toString(){
+            return this.timestampNanos / 1_000_000 + "." + String.format("%06d", this.timestampNanos % 1_000_000)
+                    + " ms " + this.actionName + " -> " + this.describe();
+        }
+    }
+
+    public static class Result {
+        public long replayed = 0;
+        public long unknownAction = 0; // the core doesn't have an action with that name
+        public long undecodable = 0; // the codec returned SKIP
+
+        @Override
+        public String toString(){
+            return "replayed: " + this.replayed + ", unknown actions: " + this.unknownAction + ", undecodable: " + this.undecodable;
+        }
+    }
+
+    public final Path directory;
+    public final ActionCodec codec;
+
+    public JournalReplayer(Path directory, ActionCodec codec){
+        this.directory = directory;
+        this.codec = codec;
+    }
+
+    public JournalReplayer(Path directory){
+        this(directory, new BasicActionCodec());
+    }
+
+    // every event in the journal, oldest first. returns how many there were
+    public long read(Consumer<Record> consumer) throws IOException{
+        long count = 0;
+        HashMap<Integer, String> names = new HashMap<>();
+        for(Path segment: ActionJournal.listSegments(this.directory)){
+            MappedByteBuffer buf;
+            try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)){
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }catch(NoSuchFileException e){ // deleted since we listed them (maxSegments on a journal that's still running)
+                continue;
+            }
+            if(buf.capacity() < ActionJournal.SEGMENT_HEADER || buf.getInt(0) != ActionJournal.MAGIC){
+                throw new IOException("Not a journal segment: " + segment);
+            }
+            if(buf.getInt(4) != ActionJournal.VERSION){
+                throw new IOException("Unsupported journal version " + buf.getInt(4) + " in " + segment);
+            }
+            long epochNanos = buf.getLong(8) * 1_000_000;
+            int pos = ActionJournal.SEGMENT_HEADER;
+            while(pos + ActionJournal.RECORD_HEADER <= buf.capacity()){
+                int length = buf.getInt(pos);
+                if(length <= 0 || pos + length > buf.capacity()){ // end of segment, or the tail that was never written
+                    break;
+                }
+                int id = buf.getInt(pos + 4);
+                long timestamp = buf.getLong(pos + 8);
+                int payload = buf.getInt(pos + 16);
+                byte type = buf.get(pos + 20);
+                ByteBuffer data = buf.slice(pos + ActionJournal.RECORD_HEADER, payload);
+                if(type == ActionJournal.TYPE_DEFINE){
+                    names.put(id, BasicActionCodec.getUtf8(data));
+                }else if(type == ActionJournal.TYPE_EVENT){
+                    String name = names.get(id);
+                    if(name != null){ // every segment defines a name before its first event, null means a damaged segment
+                        Object value = this.codec.decode(name, data.duplicate());
+                        consumer.accept(new Record(name, epochNanos + timestamp, value, data, this.codec));
+                        count += 1;
+                    }
+                }
+                pos += length;
+            }
+        }
+        return count;
+    }
+
+    // triggers every recorded action on core. speed 1 = with the recorded timing, 2 = twice as fast...,
+    // 0 or less = as fast as possible. runs on the calling thread
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Result replay(EngineCore core, double speed) throws IOException{
+        Result result = new Result();
+        long[] first = {Long.MIN_VALUE, 0}; // recorded time of the first replayed event, when we replayed it
+        this.read((Record r) -> {
+            if(r.value == ActionCodec.SKIP){
+                result.undecodable += 1;
+                return;
+            }
+            Action action = core.getActionFromName(r.actionName);
+            if(action == null){
+                result.unknownAction += 1;
+                return;
+            }
+            if(speed > 0){
+                if(first[0] == Long.MIN_VALUE){
+                    first[0] = r.timestampNanos;
+                    first[1] = System.nanoTime();
+                }
+                long due = first[1] + (long) ((r.timestampNanos - first[0]) / speed);
+                long wait;
+                while((wait = due - System.nanoTime()) > 0){
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            action.trigger(new ActionDataContainer<>(r.value));
+            result.replayed += 1;
+        });
+        return result;
+    }
+}
@@ -0,0 +1,15 @@
+package EngineCore.Threading;
+
+import java.util.ArrayList;
+
+import EngineCore.DefaultComponents.CoreComponent;
+
+// runs the components in the execution modes that don't use backing threads (EngineCore.threadsList stays empty then)
+public interface ComponentScheduler {
+    public void start(ArrayList<CoreComponent> components);
+    public void stop(); // doesn't wait, see awaitStopped
+    // false if something is still stepping after the timeout. called from one of the scheduler's own threads
+    // (ex: the exit command) it waits for the others, the calling one stops as soon as its step returns
+    public boolean awaitStopped(long timeoutMillis) throws InterruptedException;
+    public String getStatus();
+}
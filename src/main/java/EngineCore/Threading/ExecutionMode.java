@@ -0,0 +1,9 @@
+package EngineCore.Threading;
+
+public enum ExecutionMode {
+    THREADED, // components are split round-robin between EngineCore.threads backing threads
+    WORK_STEALING, // component steps are tasks on a work-stealing pool, idle workers take steps from busy ones
+    VIRTUAL_THREADS, // one backing thread per component, each running on a virtual thread. for lots of components that block (I/O)
+    DEPENDENCY_WAVES, // components step in waves compiled from their dependencies, producers before consumers every tick (blocking components run outside the ticks, see CoreComponent.setBlocking)
+    LOCKSTEP // like DEPENDENCY_WAVES, but every component gets one step per global tick on a fixed worker (paused, event driven and restarting ones can skip it, see WaveScheduler), see EngineCore.ticksPerSecond
+}
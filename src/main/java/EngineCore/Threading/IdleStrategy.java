@@ -0,0 +1,61 @@
+package EngineCore.Threading;
+
+import java.util.concurrent.locks.LockSupport;
+
+// what a backing thread does when none of its components had work in a loop.
+// first it spins, then it yields, then it parks with a backoff that doubles up to maxParkNanos.
+// a parked thread is woken right away by CoreComponentBackingThread.wake()
+public class IdleStrategy {
+    public final int spinTries;
+    public final int yieldTries;
+    public final long minParkNanos;
+    public final long maxParkNanos;
+
+    public IdleStrategy(int spinTries, int yieldTries, long minParkNanos, long maxParkNanos){
+        if(spinTries < 0 || yieldTries < 0){
+            throw new IllegalArgumentException("IdleStrategy tries cannot be negative");
+        }
+        if(minParkNanos <= 0 || maxParkNanos < minParkNanos){
+            throw new IllegalArgumentException("IdleStrategy park times must be positive and minParkNanos <= maxParkNanos");
+        }
+        this.spinTries = spinTries;
+        this.yieldTries = yieldTries;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    public IdleStrategy(){
+        this(100, 10, 1_000, 1_000_000); // 1us -> 1ms
+    }
+
+    // idleCount = how many loops in a row did no work
+    public void idle(int idleCount){
+        if(idleCount < this.spinTries){
+            Thread.onSpinWait();
+        }else if(idleCount < this.spinTries + this.yieldTries){
+            Thread.yield();
+        }else{
+            LockSupport.parkNanos(this.parkNanosFor(idleCount));
+        }
+    }
+
+    // same, but never parks longer than maxNanos (used when a timed component is due soon)
+    public void idle(int idleCount, long maxNanos){
+        if(idleCount < this.spinTries + this.yieldTries){
+            this.idle(idleCount);
+        }else if(maxNanos > 0){
+            LockSupport.parkNanos(Math.min(this.parkNanosFor(idleCount), maxNanos));
+        }
+    }
+
+    public long parkNanosFor(int idleCount){
+        int parks = idleCount - this.spinTries - this.yieldTries;
+        if(parks <= 0){
+            return this.minParkNanos;
+        }
+        if(parks >= Long.numberOfLeadingZeros(this.minParkNanos) - 1){
+            return this.maxParkNanos; // shifting further would overflow
+        }
+        return Math.min(this.minParkNanos << parks, this.maxParkNanos);
+    }
+}
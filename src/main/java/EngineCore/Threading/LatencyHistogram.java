@@ -0,0 +1,140 @@
+package EngineCore.Threading;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// step durations of one component, log bucketed (8 sub buckets per power of two, so values are within 12.5%).
+// only one thread records at a time (components are never stepped concurrently) so recording is a plain
+// increment + release store, no locks or CAS. readers on other threads get an approximate but consistent enough view.
+// time is split in SLOTS slots of SLOT_NANOS each, giving rolling windows of up to SLOTS * SLOT_NANOS
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_BITS = 41; // ~36 minutes, anything above lands in the last bucket
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB;
+    public static final long SLOT_NANOS = 5_000_000_000L;
+    public static final int SLOTS = 12;
+
+    // epoch of a slot that's unused or being cleared. System.nanoTime() can be negative, so epochs can be too
+    private static final long NO_EPOCH = Long.MIN_VALUE;
+
+    private static class Slot {
+        volatile long epoch = NO_EPOCH;
+        volatile long max = 0;
+        final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+    }
+
+    public static class Snapshot {
+        public final long count;
+        public final long p50Nanos;
+        public final long p99Nanos;
+        public final long p999Nanos;
+        public final long maxNanos;
+
+        Snapshot(long count, long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos){
+            this.count = count;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        @Override
+        public String toString(){
+            return "steps: " + this.count + ", p50: " + this.p50Nanos / 1000d + " us, p99: " + this.p99Nanos / 1000d
+                    + " us, p999: " + this.p999Nanos / 1000d + " us, max: " + this.maxNanos / 1000d + " us";
+        }
+    }
+
+    // allocated up front (~15KB per component) so recording never allocates on the stepping thread
+    private final Slot[] slots = new Slot[SLOTS];
+
+    public LatencyHistogram(){
+        for(int i = 0; i < SLOTS; i++){
+            this.slots[i] = new Slot();
+        }
+    }
+
+    static int bucketOf(long nanos){
+        if(nanos < SUB){
+            return (int)Math.max(nanos, 0);
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        if(msb >= MAX_BITS){
+            return BUCKETS - 1;
+        }
+        return (msb - SUB_BITS + 1) * SUB + (int)((nanos >>> (msb - SUB_BITS)) & (SUB - 1));
+    }
+
+    // highest value that falls in the bucket
+    static long bucketTop(int bucket){
+        if(bucket < SUB){
+            return bucket;
+        }
+        int shift = bucket / SUB - 1;
+        return ((long)(SUB + bucket % SUB + 1) << shift) - 1;
+    }
+
+    // called by the stepping thread only
+    public void record(long nowNanos, long durationNanos){
+        long epoch = Math.floorDiv(nowNanos, SLOT_NANOS); // floor, so slots don't straddle 0 when nanoTime is negative
+        int index = (int)Math.floorMod(epoch, (long)SLOTS);
+        Slot slot = this.slots[index];
+        if(slot.epoch != epoch){ // slot is from the last round, reuse it
+            slot.epoch = NO_EPOCH; // readers skip it while it's cleared
+            for(int i = 0; i < BUCKETS; i++){
+                slot.counts.lazySet(i, 0);
+            }
+            slot.max = 0;
+            slot.epoch = epoch;
+        }
+        int b = bucketOf(durationNanos);
+        slot.counts.lazySet(b, slot.counts.getPlain(b) + 1);
+        if(durationNanos > slot.max){
+            slot.max = durationNanos;
+        }
+    }
+
+    // percentiles over the last windowNanos (rounded up to whole slots, at most SLOTS * SLOT_NANOS)
+    public Snapshot snapshot(long windowNanos){
+        return this.snapshot(windowNanos, System.nanoTime());
+    }
+
+    // same, with nowNanos on the clock record() was given
+    public Snapshot snapshot(long windowNanos, long nowNanos){
+        long nowEpoch = Math.floorDiv(nowNanos, SLOT_NANOS);
+        long slotsWanted = Math.min(SLOTS, Math.max(1, (windowNanos + SLOT_NANOS - 1) / SLOT_NANOS));
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        long max = 0;
+        for(Slot slot: this.slots){
+            long e = slot.epoch;
+            if(e == NO_EPOCH || e <= nowEpoch - slotsWanted){
+                continue;
+            }
+            for(int i = 0; i < BUCKETS; i++){
+                int c = slot.counts.get(i);
+                counts[i] += c;
+                total += c;
+            }
+            max = Math.max(max, slot.max);
+        }
+        return new Snapshot(total, percentile(counts, total, 0.5, max), percentile(counts, total, 0.99, max),
+                percentile(counts, total, 0.999, max), max);
+    }
+
+    private static long percentile(long[] counts, long total, double p, long max){
+        if(total == 0){
+            return 0;
+        }
+        long rank = (long)Math.ceil(total * p);
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++){
+            seen += counts[i];
+            if(seen >= rank){
+                // the last bucket has no top, everything above MAX_BITS is in there
+                return i == BUCKETS - 1 ? max : Math.min(bucketTop(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,166 @@
+package EngineCore.Threading;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import EngineCore.EngineCore;
+import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.DefaultComponents.CoreComponent.CoreComponentBackingThread;
+
+// moves components from the busiest backing thread to the least busy one when their loop times drift too far apart.
+// an imbalance has to show up for requiredChecks checks in a row before anything moves, and after a move nothing else
+// moves for cooldownChecks checks so the loop times can settle (otherwise it just keeps moving things back and forth)
+public class LoadBalancer {
+    public static class Decision {
+        public final long timeMillis;
+        public final String component;
+        public final String fromThread;
+        public final String toThread;
+        public final long fromLoopNanos;
+        public final long toLoopNanos;
+        public final long componentStepNanos;
+
+        Decision(String component, String fromThread, String toThread, long fromLoopNanos, long toLoopNanos, long componentStepNanos){
+            this.timeMillis = System.currentTimeMillis();
+            this.component = component;
+            this.fromThread = fromThread;
+            this.toThread = toThread;
+            this.fromLoopNanos = fromLoopNanos;
+            this.toLoopNanos = toLoopNanos;
+            this.componentStepNanos = componentStepNanos;
+        }
+
+        @Override
+        public String toString(){
+            return this.timeMillis + ": moved " + this.component + " (" + this.componentStepNanos / 1000 + " us/step) from "
+                    + this.fromThread + " (" + this.fromLoopNanos / 1000 + " us/loop) to "
+                    + this.toThread + " (" + this.toLoopNanos / 1000 + " us/loop)";
+        }
+    }
+
+    private final EngineCore core;
+
+    public double imbalanceRatio = 2.0; // busiest loop time has to be this many times the least busy one
+    public long minLoopNanos = 50_000; // below this the busiest thread isn't worth unloading
+    public int requiredChecks = 3;
+    public int cooldownChecks = 5;
+    public long intervalMillis = 500;
+    public int maxDecisions = 100;
+
+    private final ArrayDeque<Decision> decisions = new ArrayDeque<>();
+    private int imbalancedChecks = 0;
+    private int cooldown = 0;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public LoadBalancer(EngineCore core){
+        this.core = core;
+    }
+
+    public void start(){
+        this.running = true;
+        this.thread = new Thread(() -> {
+            while(this.running){
+                try{
+                    Thread.sleep(this.intervalMillis);
+                    this.rebalance();
+                }catch(InterruptedException e){
+                    break;
+                }catch(RuntimeException e){
+                    this.core.reportError("load balancer", e);
+                }
+            }
+        }, "LoadBalancer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void stop(){
+        this.running = false;
+        if(this.thread != null){
+            this.thread.interrupt();
+        }
+    }
+
+    // one check, returns what it moved or null
+    public synchronized Decision rebalance(){
+        if(this.cooldown > 0){
+            this.cooldown -= 1;
+            return null;
+        }
+        ArrayList<CoreComponentBackingThread> threads = new ArrayList<>();
+        for(CoreComponentBackingThread th: this.core.threadsList){ // copy-on-write, this goes over a snapshot
+            if(!th.isDedicated() && th.getLifecycle() == CoreComponentBackingThread.Lifecycle.RUNNING){
+                threads.add(th);
+            }
+        }
+        if(threads.size() < 2){
+            return null;
+        }
+        CoreComponentBackingThread busiest = threads.get(0);
+        CoreComponentBackingThread idlest = threads.get(0);
+        for(CoreComponentBackingThread th: threads){
+            if(th.getLoopNanos() > busiest.getLoopNanos()){
+                busiest = th;
+            }
+            if(th.getLoopNanos() < idlest.getLoopNanos()){
+                idlest = th;
+            }
+        }
+        long busy = busiest.getLoopNanos();
+        long idle = idlest.getLoopNanos();
+        if(busy < this.minLoopNanos || busy < this.imbalanceRatio * idle){
+            this.imbalancedChecks = 0;
+            return null;
+        }
+        this.imbalancedChecks += 1;
+        if(this.imbalancedChecks < this.requiredChecks){
+            return null;
+        }
+        this.imbalancedChecks = 0;
+
+        // move the component closest to half the gap. anything as big as the gap would just flip the imbalance around
+        // (and a thread with a single component can't be split at all)
+        String[] attached = busiest.getAttachedComponents();
+        if(attached.length < 2){
+            return null;
+        }
+        long gap = busy - idle;
+        CoreComponent best = null;
+        long bestScore = Long.MAX_VALUE;
+        for(String name: attached){
+            CoreComponent comp = this.core.getComponentFromName(name);
+            if(comp == null){
+                continue;
+            }
+            long cost = comp.getAverageStepNanos();
+            if(cost <= 0 || cost >= gap){
+                continue;
+            }
+            long score = Math.abs(gap / 2 - cost);
+            if(score < bestScore){
+                bestScore = score;
+                best = comp;
+            }
+        }
+        if(best == null){
+            return null;
+        }
+        this.core.moveComponentToThread(best, idlest.getName());
+        Decision d = new Decision(best.name, busiest.getName(), idlest.getName(), busy, idle, best.getAverageStepNanos());
+        synchronized(this.decisions){
+            this.decisions.addLast(d);
+            while(this.decisions.size() > this.maxDecisions){
+                this.decisions.removeFirst();
+            }
+        }
+        this.cooldown = this.cooldownChecks;
+        return d;
+    }
+
+    public ArrayList<Decision> getDecisions(){
+        synchronized(this.decisions){
+            return new ArrayList<>(this.decisions);
+        }
+    }
+}
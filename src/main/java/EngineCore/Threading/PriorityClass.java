@@ -0,0 +1,59 @@
+package EngineCore.Threading;
+
+import EngineCore.DefaultComponents.ComponentType;
+
+// scheduling classes. higher classes step first on every thread/wave, and with EngineCore.highPriorityThreads
+// HIGH components get backing threads of their own so housekeeping components can't hold them up at all
+public enum PriorityClass {
+    HIGH,
+    NORMAL,
+    LOW;
+
+    // default class for a component with these types, the highest one wins
+    public static PriorityClass of(ComponentType... types){
+        PriorityClass res = null;
+        for(ComponentType type: types){
+            PriorityClass c;
+            switch(type){
+                case PROTOCOL_HANDLER:
+                case CONNECTION_MANAGER:
+                    c = HIGH;
+                    break;
+                case STORAGE_CACHE:
+                    c = LOW;
+                    break;
+                default:
+                    c = NORMAL;
+            }
+            if(res == null || c.ordinal() < res.ordinal()){
+                res = c;
+            }
+        }
+        return res == null ? NORMAL : res;
+    }
+
+    public static class Stats {
+        public final PriorityClass priority;
+        public final int components;
+        public final long cpuNanos;
+        public final double cpuShare; // of the cpu time used by all components
+        public final long averageDelayNanos; // how long a runnable component waited before it got stepped
+        public final long maxDelayNanos;
+
+        public Stats(PriorityClass priority, int components, long cpuNanos, double cpuShare, long averageDelayNanos, long maxDelayNanos){
+            this.priority = priority;
+            this.components = components;
+            this.cpuNanos = cpuNanos;
+            this.cpuShare = cpuShare;
+            this.averageDelayNanos = averageDelayNanos;
+            this.maxDelayNanos = maxDelayNanos;
+        }
+
+        @Override
+        public String toString(){
+            return this.priority + " -> components: " + this.components + ", cpu: " + this.cpuNanos / 1_000_000 + " ms ("
+                    + Math.round(this.cpuShare * 1000) / 10d + "%), scheduling delay avg/max: "
+                    + this.averageDelayNanos / 1000d + "/" + this.maxDelayNanos / 1000d + " us";
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package EngineCore.Threading;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// how long every phase of an EngineCore exit/restart took, and what didn't stop before the deadline
+public class ShutdownReport {
+    public final String kind;
+    public final long deadlineMillis;
+    private final long startNanos;
+    private final long deadlineNanos;
+    private long phaseStartNanos;
+    private long totalNanos = -1;
+    private final LinkedHashMap<String, Long> phaseNanos = new LinkedHashMap<>();
+    private final ArrayList<String> stragglers = new ArrayList<>();
+
+    public ShutdownReport(String kind, long deadlineMillis){
+        this.kind = kind;
+        this.deadlineMillis = deadlineMillis;
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = this.startNanos + deadlineMillis * 1_000_000;
+        this.phaseStartNanos = this.startNanos;
+    }
+
+    public long getDeadlineNanos(){
+        return this.deadlineNanos;
+    }
+
+    // what's left of the deadline, at least 1 so it can be passed to join/awaitTermination (0 = wait forever there)
+    public long remainingMillis(){
+        return Math.max(1, (this.deadlineNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    public void phaseDone(String phase){
+        long now = System.nanoTime();
+        this.phaseNanos.put(phase, now - this.phaseStartNanos);
+        this.phaseStartNanos = now;
+    }
+
+    // a thread/scheduler/component that was still running at the deadline
+    public void addStraggler(String name){
+        this.stragglers.add(name);
+    }
+
+    public void finish(){
+        this.totalNanos = System.nanoTime() - this.startNanos;
+    }
+
+    public Map<String, Long> getPhaseNanos(){
+        return new LinkedHashMap<>(this.phaseNanos);
+    }
+
+    public ArrayList<String> getStragglers(){
+        return new ArrayList<>(this.stragglers);
+    }
+
+    public long getTotalNanos(){
+        return this.totalNanos;
+    }
+
+    public boolean isClean(){
+        return this.stragglers.isEmpty() && this.totalNanos <= this.deadlineMillis * 1_000_000;
+    }
+
+    @Override
+    public String toString(){
+        String res = this.kind + " took " + this.totalNanos / 1_000_000d + " ms (deadline " + this.deadlineMillis + " ms)";
+        for(Map.Entry<String, Long> phase: this.phaseNanos.entrySet()){
+            res += "\n  " + phase.getKey() + ": " + phase.getValue() / 1_000_000d + " ms";
+        }
+        if(!this.stragglers.isEmpty()){
+            res += "\n  still running at the deadline: " + this.stragglers;
+        }
+        return res;
+    }
+}
@@ -0,0 +1,175 @@
+package EngineCore.Threading;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import EngineCore.EngineCore;
+import EngineCore.DefaultComponents.CoreComponent;
+
+// handles components that throw. only the failing component is restarted (its update runs again on the thread that
+// steps it, after a backoff that doubles with every failure), everything else on the thread keeps running.
+// after too many failures inside the policy's window the circuit opens and the component stays down until reset()
+public class Supervisor {
+    public static class RestartPolicy {
+        public final long initialBackoffNanos;
+        public final long maxBackoffNanos;
+        public final int maxFailures; // this many failures inside the window opens the circuit
+        public final long windowNanos;
+
+        public RestartPolicy(long initialBackoffMillis, long maxBackoffMillis, int maxFailures, long windowMillis){
+            if(initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis || maxFailures < 1 || windowMillis <= 0){
+                throw new IllegalArgumentException("Invalid restart policy");
+            }
+            this.initialBackoffNanos = initialBackoffMillis * 1_000_000;
+            this.maxBackoffNanos = maxBackoffMillis * 1_000_000;
+            this.maxFailures = maxFailures;
+            this.windowNanos = windowMillis * 1_000_000;
+        }
+
+        public RestartPolicy(){
+            this(10, 5_000, 5, 60_000); // 5 failures in a minute opens the circuit
+        }
+    }
+
+    public static class ComponentHealth {
+        public final String component;
+        public final long failures;
+        public final long restarts;
+        public final int failuresInWindow;
+        public final boolean circuitOpen;
+        public final long lastRestartLatencyNanos;
+        public final long maxRestartLatencyNanos;
+        public final String lastError;
+
+        ComponentHealth(String component, long failures, long restarts, int failuresInWindow, boolean circuitOpen,
+                        long lastRestartLatencyNanos, long maxRestartLatencyNanos, String lastError){
+            this.component = component;
+            this.failures = failures;
+            this.restarts = restarts;
+            this.failuresInWindow = failuresInWindow;
+            this.circuitOpen = circuitOpen;
+            this.lastRestartLatencyNanos = lastRestartLatencyNanos;
+            this.maxRestartLatencyNanos = maxRestartLatencyNanos;
+            this.lastError = lastError;
+        }
+
+        @Override
+        public String toString(){
+            return this.component + " -> failures: " + this.failures + ", restarts: " + this.restarts
+                    + ", restart latency last/max: " + this.lastRestartLatencyNanos / 1000 + "/" + this.maxRestartLatencyNanos / 1000 + " us"
+                    + (this.circuitOpen ? ", CIRCUIT OPEN" : "") + (this.lastError != null ? ", last error: " + this.lastError : "");
+        }
+    }
+
+    private static class Record {
+        RestartPolicy policy;
+        final ArrayDeque<Long> window = new ArrayDeque<>(); // failure times inside the policy window
+        long failures = 0;
+        long restarts = 0;
+        long failedAtNanos = 0;
+        long lastLatencyNanos = 0;
+        long maxLatencyNanos = 0;
+        String lastError = null;
+    }
+
+    private final EngineCore core;
+    public RestartPolicy defaultPolicy = new RestartPolicy();
+    private final ConcurrentHashMap<String, Record> records = new ConcurrentHashMap<>();
+    private final AtomicLong threadRestarts = new AtomicLong();
+
+    public Supervisor(EngineCore core){
+        this.core = core;
+    }
+
+    private Record record(String componentName){
+        return this.records.computeIfAbsent(componentName, (String n) -> new Record());
+    }
+
+    public void setPolicy(String componentName, RestartPolicy policy){
+        Record r = this.record(componentName);
+        synchronized(r){
+            r.policy = policy;
+        }
+    }
+
+    // called on the thread that was stepping the component
+    public void onFailure(CoreComponent comp, Throwable e){
+        Record r = this.record(comp.name);
+        long now = System.nanoTime();
+        boolean open;
+        long backoff;
+        synchronized(r){
+            RestartPolicy policy = r.policy != null ? r.policy : this.defaultPolicy;
+            r.failures += 1;
+            r.failedAtNanos = now;
+            r.lastError = e.toString();
+            r.window.addLast(now);
+            while(now - r.window.peekFirst() > policy.windowNanos){
+                r.window.removeFirst();
+            }
+            open = r.window.size() >= policy.maxFailures;
+            // doubles per failure in the window. the shift is capped so the top bit of the backoff stays clear,
+            // a long initial backoff shifted too far would come out negative and restart right away
+            int shift = Math.min(r.window.size() - 1, Long.numberOfLeadingZeros(policy.initialBackoffNanos) - 1);
+            backoff = Math.min(policy.initialBackoffNanos << shift, policy.maxBackoffNanos);
+        }
+        this.core.reportError("component " + comp.name, e);
+        if(open){
+            comp.openCircuit();
+            System.out.println("Component " + comp.name + " failed too often, circuit open until reset");
+        }else{
+            comp.scheduleRestart(now + backoff);
+            System.out.println("Component " + comp.name + " failed, restarting in " + backoff / 1_000_000d + " ms");
+        }
+    }
+
+    // called once the component's update ran again successfully
+    public void onRestarted(CoreComponent comp){
+        Record r = this.record(comp.name);
+        synchronized(r){
+            r.restarts += 1;
+            r.lastLatencyNanos = System.nanoTime() - r.failedAtNanos;
+            r.maxLatencyNanos = Math.max(r.maxLatencyNanos, r.lastLatencyNanos);
+        }
+    }
+
+    // closes the circuit and restarts the component right away
+    public void reset(String componentName){
+        CoreComponent comp = this.core.getComponentFromName(componentName);
+        if(comp == null){
+            throw new IllegalArgumentException("Couldn't reset component, not found: " + componentName);
+        }
+        Record r = this.record(componentName);
+        synchronized(r){
+            r.window.clear();
+            r.failedAtNanos = System.nanoTime();
+        }
+        comp.scheduleRestart(System.nanoTime());
+        comp.wake();
+    }
+
+    public void onThreadRestarted(){
+        this.threadRestarts.incrementAndGet();
+    }
+
+    public long getThreadRestarts(){
+        return this.threadRestarts.get();
+    }
+
+    public ArrayList<ComponentHealth> getHealth(){
+        ArrayList<ComponentHealth> res = new ArrayList<>();
+        for(CoreComponent comp: this.core.getAllComponents()){
+            Record r = this.records.get(comp.name);
+            if(r == null){
+                continue;
+            }
+            synchronized(r){
+                res.add(new ComponentHealth(comp.name, r.failures, r.restarts, r.window.size(), comp.isCircuitOpen(),
+                        r.lastLatencyNanos, r.maxLatencyNanos, r.lastError));
+            }
+        }
+        return res;
+    }
+}
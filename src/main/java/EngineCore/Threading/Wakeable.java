@@ -0,0 +1,6 @@
+package EngineCore.Threading;
+
+// whatever runs a component's steps (a backing thread, a pool task, ...). CoreComponent.wake() goes through this
+public interface Wakeable {
+    public void wake();
+}
@@ -0,0 +1,504 @@
+package EngineCore.Threading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import EngineCore.EngineCore;
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+
+// compiles CoreComponent.dependencies into waves: a component is always in a later wave than every component
+// that has one of the types it depends on. every tick the waves run in order, the components inside a wave
+// are stepped in parallel by the workers and a barrier separates the waves, so producers always step before consumers.
+// in lockstep mode every component is pinned to one worker and gets exactly one step attempt per tick (tick rates and idling
+// are ignored), the engine advances a global tick counter and the ticks can be limited to a fixed rate. with the same
+// components and worker count every run steps the same components on the same workers in the same order.
+// an attempt doesn't step the component when it's paused, event driven and not woken since its last step, restarting
+// (backing off, or the attempt runs its update instead) or its circuit is open. those are counted as skipped steps in
+// the tick stats, a run is only deterministic if they are too (ex: wakes only come from other components' steps).
+// blocking components (CoreComponent.setBlocking, ex: the console) aren't in the waves, each one runs on a thread of its own
+// outside the ticks so a step waiting for input doesn't freeze everything at the barrier. they aren't ordered against the waves
+public class WaveScheduler implements ComponentScheduler, Wakeable {
+    private final EngineCore core;
+    private final int workerCount;
+    private final boolean lockstep;
+    private CoreComponent[][] waves = new CoreComponent[0][];
+    private long[][] nextTickNanos;
+    private AtomicInteger[] cursors; // next unclaimed component of each wave
+    private Phaser phaser;
+    private Thread[] workers = new Thread[0];
+    private final ArrayList<OffBarrier> offBarrier = new ArrayList<>();
+
+    private volatile boolean running = false;
+    private volatile boolean updatePass = true; // the first tick runs primitiveUpdate instead of step
+    private volatile boolean tickDidWork = false;
+    private volatile boolean signalled = false;
+    private volatile Thread idler = null;
+    private volatile long ticks = 0;
+    private int idleCount = 0; // only touched in onAdvance
+    private int waveIndex = 0; // the wave the workers just finished, only touched in onAdvance (the phase number wraps around)
+
+    private volatile long tickPeriodNanos = 0; // lockstep only, 0 = as fast as possible
+    private volatile long tickLimit = 0; // lockstep only, stop after this many ticks (0 = never)
+    private long nextTickDeadline = 0;
+    private long tickStart = 0;
+
+    // per-tick timing (busy time, without the wait for the tick rate), written at the end of every tick
+    private final Object statsLock = new Object();
+    private long lastTickNanos = 0;
+    private long minTickNanos = Long.MAX_VALUE;
+    private long maxTickNanos = 0;
+    private long totalTickNanos = 0;
+    private long lastTickSkipped = 0;
+    private long totalSkipped = 0;
+    // lockstep only, steps skipped during the current tick by each worker, a cache line (8 longs) apart
+    private long[] skipped = new long[0];
+
+    public WaveScheduler(EngineCore core, int workerCount){
+        this(core, workerCount, false);
+    }
+
+    public WaveScheduler(EngineCore core, int workerCount, boolean lockstep){
+        this.core = core;
+        this.workerCount = Math.max(1, workerCount);
+        this.lockstep = lockstep;
+    }
+
+    public static class TickStats {
+        public final long ticks;
+        public final long lastTickNanos;
+        public final long minTickNanos;
+        public final long maxTickNanos;
+        public final long meanTickNanos;
+        // lockstep only, step attempts that didn't step their component (see the class comment), in the last tick and in total
+        public final long lastTickSkippedSteps;
+        public final long skippedSteps;
+
+        TickStats(long ticks, long lastTickNanos, long minTickNanos, long maxTickNanos, long meanTickNanos,
+                long lastTickSkippedSteps, long skippedSteps){
+            this.ticks = ticks;
+            this.lastTickNanos = lastTickNanos;
+            this.minTickNanos = minTickNanos;
+            this.maxTickNanos = maxTickNanos;
+            this.meanTickNanos = meanTickNanos;
+            this.lastTickSkippedSteps = lastTickSkippedSteps;
+            this.skippedSteps = skippedSteps;
+        }
+
+        @Override
+        public String toString(){
+            return "ticks: " + this.ticks + ", last: " + this.lastTickNanos / 1000 + " us, min: " + this.minTickNanos / 1000
+                    + " us, max: " + this.maxTickNanos / 1000 + " us, mean: " + this.meanTickNanos / 1000 + " us"
+                    + ", skipped steps: " + this.skippedSteps + " (last tick " + this.lastTickSkippedSteps + ")";
+        }
+    }
+
+    // lockstep only, 0 = unbounded
+    public void setTicksPerSecond(double ticksPerSecond){
+        if(Double.isNaN(ticksPerSecond) || ticksPerSecond < 0){
+            throw new IllegalArgumentException("Ticks per second cannot be negative");
+        }
+        this.tickPeriodNanos = ticksPerSecond == 0 ? 0 : Math.max(1, (long) (1_000_000_000d / ticksPerSecond));
+    }
+
+    // lockstep only, the workers stop on their own after this many ticks (for batch simulations), 0 = run until stop()
+    public void setTickLimit(long ticks){
+        this.tickLimit = ticks;
+    }
+
+    // waits for the workers to finish (tick limit reached or stopped), returns false on timeout.
+    // that includes the blocking components' threads, which finish once their current step returns
+    public boolean awaitFinished(long timeoutMillis) throws InterruptedException{
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        ArrayList<Thread> threads = new ArrayList<>(Arrays.asList(this.workers));
+        for(OffBarrier ob: this.offBarrier){
+            threads.add(ob.thread);
+        }
+        for(Thread th: threads){
+            long left = deadline - System.currentTimeMillis();
+            if(left <= 0){
+                return false;
+            }
+            if(th == Thread.currentThread()){
+                continue; // one of our own workers (ex: the exit command), it can't wait for itself
+            }
+            th.join(left);
+            if(th.isAlive()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public TickStats getTickStats(){
+        synchronized(this.statsLock){
+            long ticks = this.ticks;
+            return new TickStats(ticks, this.lastTickNanos, ticks == 0 ? 0 : this.minTickNanos, this.maxTickNanos,
+                    ticks == 0 ? 0 : this.totalTickNanos / ticks, this.lastTickSkipped, this.totalSkipped);
+        }
+    }
+
+    public static CoreComponent[][] compileWaves(ArrayList<CoreComponent> components){
+        int n = components.size();
+        int[] level = new int[n];
+        int[] state = new int[n]; // 0 = not visited, 1 = visiting, 2 = done
+        int maxLevel = -1;
+        for(int i = 0; i < n; i++){
+            maxLevel = Math.max(maxLevel, levelOf(components, i, level, state));
+        }
+        ArrayList<ArrayList<CoreComponent>> byLevel = new ArrayList<>();
+        for(int l = 0; l <= maxLevel; l++){
+            byLevel.add(new ArrayList<>());
+        }
+        for(int i = 0; i < n; i++){
+            byLevel.get(level[i]).add(components.get(i));
+        }
+        CoreComponent[][] res = new CoreComponent[byLevel.size()][];
+        for(int l = 0; l < res.length; l++){
+            // nothing inside a wave depends on each other, so higher priority classes can go first
+            byLevel.get(l).sort((a, b) -> a.getPriority().compareTo(b.getPriority()));
+            res[l] = byLevel.get(l).toArray(new CoreComponent[0]);
+        }
+        return res;
+    }
+
+    private static int levelOf(ArrayList<CoreComponent> components, int i, int[] level, int[] state){
+        if(state[i] == 2){
+            return level[i];
+        }
+        if(state[i] == 1){
+            throw new IllegalArgumentException("CoreComponents circular dependency, check dependencies");
+        }
+        state[i] = 1;
+        int res = 0;
+        CoreComponent comp = components.get(i);
+        for(int j = 0; j < components.size(); j++){
+            if(j != i && provides(components.get(j), comp)){
+                res = Math.max(res, levelOf(components, j, level, state) + 1);
+            }
+        }
+        state[i] = 2;
+        level[i] = res;
+        return res;
+    }
+
+    private static boolean provides(CoreComponent provider, CoreComponent consumer){
+        for(ComponentType dep: consumer.dependencies){
+            for(ComponentType type: provider.types){
+                if(type.name().equals(dep.name())){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // steps a blocking component on its own thread, the same way a backing thread would with just that component
+    private final class OffBarrier implements Runnable, Wakeable {
+        final CoreComponent component;
+        final Thread thread;
+        private volatile boolean signalled = false;
+
+        OffBarrier(CoreComponent component){
+            this.component = component;
+            this.thread = new Thread(this, "WaveBlocking-" + component.name);
+        }
+
+        @Override
+        public void run(){
+            EngineCore core = WaveScheduler.this.core;
+            try{
+                this.component.primitiveUpdate(core);
+            }catch(Throwable e){
+                core.supervisor.onFailure(this.component, e); // restarting runs the update again
+            }
+            int idleCount = 0;
+            long nextTick = System.nanoTime();
+            while(WaveScheduler.this.running){
+                this.signalled = false;
+                if(this.component.isExecutionPaused()){
+                    LockSupport.park(this); // resumeExecution wakes it
+                    continue;
+                }
+                long period = this.component.getTickPeriodNanos();
+                long start = System.nanoTime();
+                if(period > 0){
+                    if(nextTick - start > 0){
+                        LockSupport.parkNanos(this, nextTick - start);
+                        continue;
+                    }
+                    this.component.scheduledStep(core, nextTick);
+                    nextTick = this.component.nextTickAfter(nextTick, start, System.nanoTime());
+                }else if(this.component.scheduledStep(core) || this.signalled){
+                    idleCount = 0;
+                }else if(this.component.isWaitingForSignal()){
+                    LockSupport.park(this);
+                }else{
+                    core.idleStrategy.idle(idleCount);
+                    if(idleCount < Integer.MAX_VALUE){
+                        idleCount += 1;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void wake(){
+            this.signalled = true;
+            LockSupport.unpark(this.thread);
+        }
+    }
+
+    @Override
+    public void start(ArrayList<CoreComponent> components){
+        ArrayList<CoreComponent> ticked = new ArrayList<>();
+        for(CoreComponent comp: components){
+            if(comp.isBlocking()){
+                this.offBarrier.add(new OffBarrier(comp));
+            }else{
+                ticked.add(comp);
+            }
+        }
+        this.waves = compileWaves(ticked);
+        this.running = true;
+        for(OffBarrier ob: this.offBarrier){
+            ob.component.setWaker(ob);
+            ob.thread.start();
+        }
+        if(this.waves.length == 0){
+            return;
+        }
+        this.nextTickNanos = new long[this.waves.length][];
+        this.cursors = new AtomicInteger[this.waves.length];
+        this.skipped = new long[this.workerCount * 8];
+        for(int w = 0; w < this.waves.length; w++){
+            this.nextTickNanos[w] = new long[this.waves[w].length];
+            this.cursors[w] = new AtomicInteger(0);
+            for(CoreComponent comp: this.waves[w]){
+                comp.setWaker(this);
+            }
+        }
+        this.phaser = new Phaser(this.workerCount){
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties){
+                return WaveScheduler.this.onWaveDone() || registeredParties == 0;
+            }
+        };
+        this.tickStart = System.nanoTime();
+        this.nextTickDeadline = this.tickStart;
+        this.workers = new Thread[this.workerCount];
+        for(int i = 0; i < this.workerCount; i++){
+            int id = i;
+            this.workers[i] = new Thread(() -> this.work(id), (this.lockstep ? "LockstepWorker-" : "WaveWorker-") + i);
+            this.workers[i].start();
+        }
+    }
+
+    private void work(int id){
+        CoreComponent[][] waves = this.waves;
+        while(true){
+            for(int w = 0; w < waves.length; w++){
+                CoreComponent[] wave = waves[w];
+                if(this.lockstep){
+                    // fixed assignment so every run does the same thing on the same worker
+                    for(int i = id; i < wave.length; i += this.workerCount){
+                        this.runComponent(id, w, i, wave[i]);
+                    }
+                }else{
+                    int i;
+                    while((i = this.cursors[w].getAndIncrement()) < wave.length){
+                        this.runComponent(id, w, i, wave[i]);
+                    }
+                }
+                // the worker whose arrival terminated the phaser still gets a normal phase number back
+                if(this.phaser.arriveAndAwaitAdvance() < 0 || this.phaser.isTerminated()){
+                    return; // terminated by stop() or the tick limit
+                }
+            }
+        }
+    }
+
+    private void runComponent(int worker, int w, int i, CoreComponent comp){
+        try{
+            if(this.updatePass){
+                comp.primitiveUpdate(this.core);
+                return;
+            }
+            if(comp.isExecutionPaused()){
+                if(this.lockstep){
+                    this.skipped[worker * 8] += 1;
+                }
+                return;
+            }
+            long period = comp.getTickPeriodNanos();
+            if(period > 0 && !this.lockstep){
+                long start = System.nanoTime();
+                if(this.nextTickNanos[w][i] == 0){
+                    this.nextTickNanos[w][i] = start;
+                }
+                if(this.nextTickNanos[w][i] - start > 0){
+                    return; // not due yet
+                }
+                comp.scheduledStep(this.core, this.nextTickNanos[w][i]);
+                this.nextTickNanos[w][i] = comp.nextTickAfter(this.nextTickNanos[w][i], start, System.nanoTime());
+                return;
+            }
+            long steps = comp.getStepCount();
+            if(comp.scheduledStep(this.core) && !this.tickDidWork){
+                this.tickDidWork = true;
+            }
+            if(this.lockstep && comp.getStepCount() == steps){
+                this.skipped[worker * 8] += 1;
+            }
+        }catch(Throwable e){
+            this.core.supervisor.onFailure(comp, e); // only update can throw here, scheduledStep reports to the supervisor itself
+        }
+    }
+
+    // runs on the last worker to arrive while the others wait, returns true to terminate
+    private boolean onWaveDone(){
+        int w = this.waveIndex;
+        this.waveIndex = w + 1 == this.waves.length ? 0 : w + 1; // the workers go through the waves in the same order
+        this.cursors[w].set(0); // it won't run again until after at least one more barrier
+        if(!this.running){
+            return true;
+        }
+        if(w == this.waves.length - 1){ // end of a tick
+            if(this.updatePass){
+                this.updatePass = false;
+            }else{
+                this.recordTick(System.nanoTime() - this.tickStart);
+            }
+            if(this.lockstep){
+                long limit = this.tickLimit;
+                if(limit > 0 && this.ticks >= limit){
+                    this.running = false;
+                    this.wakeOffBarrier();
+                    return true;
+                }
+                this.waitForNextTick();
+            }else if(this.tickDidWork || this.signalled){
+                this.idleCount = 0;
+            }else{
+                this.idler = Thread.currentThread();
+                if(!this.signalled){
+                    this.core.idleStrategy.idle(this.idleCount);
+                }
+                this.idler = null;
+                if(this.idleCount < Integer.MAX_VALUE){
+                    this.idleCount += 1;
+                }
+            }
+            this.tickDidWork = false;
+            this.signalled = false;
+            this.tickStart = System.nanoTime();
+        }
+        return false;
+    }
+
+    // called from onAdvance, every worker is waiting at the barrier so their skipped counts can be read and reset
+    private void recordTick(long nanos){
+        long skippedNow = 0;
+        for(int i = 0; i < this.skipped.length; i += 8){
+            skippedNow += this.skipped[i];
+            this.skipped[i] = 0;
+        }
+        synchronized(this.statsLock){
+            this.lastTickSkipped = skippedNow;
+            this.totalSkipped += skippedNow;
+            this.ticks += 1;
+            this.lastTickNanos = nanos;
+            this.minTickNanos = Math.min(this.minTickNanos, nanos);
+            this.maxTickNanos = Math.max(this.maxTickNanos, nanos);
+            this.totalTickNanos += nanos;
+        }
+    }
+
+    private void waitForNextTick(){
+        long period = this.tickPeriodNanos;
+        if(period == 0){
+            return;
+        }
+        this.nextTickDeadline += period;
+        long now = System.nanoTime();
+        if(this.nextTickDeadline - now <= 0){
+            this.nextTickDeadline = now; // fell behind, don't burst to catch up
+            return;
+        }
+        long left;
+        while(this.running && (left = this.nextTickDeadline - System.nanoTime()) > 0){
+            LockSupport.parkNanos(left);
+        }
+    }
+
+    @Override
+    public void wake(){
+        this.signalled = true;
+        Thread th = this.idler;
+        if(th != null){
+            LockSupport.unpark(th);
+        }
+    }
+
+    private void wakeOffBarrier(){
+        for(OffBarrier ob: this.offBarrier){
+            LockSupport.unpark(ob.thread); // so a parked one sees running is false
+        }
+    }
+
+    @Override
+    public void stop(){
+        this.running = false;
+        this.wake();
+        this.wakeOffBarrier();
+        for(CoreComponent[] wave: this.waves){
+            for(CoreComponent comp: wave){
+                comp.setWaker(null);
+            }
+        }
+        for(OffBarrier ob: this.offBarrier){
+            ob.component.setWaker(null);
+        }
+    }
+
+    @Override
+    public boolean awaitStopped(long timeoutMillis) throws InterruptedException{
+        return this.awaitFinished(timeoutMillis);
+    }
+
+    // ticks stepped so far (the update pass isn't counted), in lockstep mode this is the global tick counter
+    public long getTicks(){
+        return this.ticks;
+    }
+
+    public String[][] getWaves(){
+        String[][] res = new String[this.waves.length][];
+        for(int w = 0; w < this.waves.length; w++){
+            res[w] = new String[this.waves[w].length];
+            for(int i = 0; i < this.waves[w].length; i++){
+                res[w][i] = this.waves[w][i].name;
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public String getStatus(){
+        StringBuilder res = new StringBuilder((this.lockstep ? "lockstep" : "dependency waves") + ", workers: " + this.workerCount + ", " + this.getTickStats());
+        String[][] waves = this.getWaves();
+        for(int w = 0; w < waves.length; w++){
+            res.append("\nwave ").append(w).append(" -> ").append(String.join(", ", waves[w]));
+        }
+        if(!this.offBarrier.isEmpty()){
+            ArrayList<String> names = new ArrayList<>();
+            for(OffBarrier ob: this.offBarrier){
+                names.add(ob.component.name);
+            }
+            res.append("\noutside the ticks (blocking) -> ").append(String.join(", ", names));
+        }
+        return res.toString();
+    }
+}
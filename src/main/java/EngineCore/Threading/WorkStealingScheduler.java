@@ -0,0 +1,213 @@
+package EngineCore.Threading;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import EngineCore.EngineCore;
+import EngineCore.DefaultComponents.CoreComponent;
+
+// runs every component's step as a task on a ForkJoinPool instead of pinning it to a backing thread.
+// after a step the task resubmits itself to the worker's local queue, idle workers steal from the others.
+// each component has exactly one task and the task is only ever queued once, so a component is never stepped by two threads at once
+public class WorkStealingScheduler implements ComponentScheduler {
+    private static final int PARKED = 0;
+    private static final int SCHEDULED = 1;
+
+    private final EngineCore core;
+    private final StepPool pool;
+    private final ScheduledThreadPoolExecutor timer; // resubmits parked and timed components when they're due
+    private final ArrayList<ComponentTask> tasks = new ArrayList<>();
+    private volatile boolean running = false;
+
+    public WorkStealingScheduler(EngineCore core, int parallelism){
+        this.core = core;
+        this.pool = new StepPool(Math.max(1, parallelism));
+        this.timer = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+            Thread th = new Thread(r, "WorkStealingScheduler-timer");
+            th.setDaemon(true);
+            return th;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private static class StepPool extends ForkJoinPool {
+        StepPool(int parallelism){
+            // asyncMode so a worker goes through its queue FIFO, otherwise a resubmitting task would starve the rest of the queue
+            super(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+
+        // workers only look at the shared submission queue when their own queue runs dry, which never happens while
+        // components keep resubmitting themselves. so steps submitted from outside the pool (start, wakes, timer) get pulled in by hand
+        void pullSubmission(){
+            if(this.hasQueuedSubmissions()){
+                ForkJoinTask<?> task = this.pollSubmission();
+                if(task != null){
+                    task.fork();
+                }
+            }
+        }
+    }
+
+    public class ComponentTask implements Runnable, Wakeable {
+        public final CoreComponent component;
+        private final AtomicInteger state = new AtomicInteger(PARKED);
+        private volatile boolean signalled = false;
+        private boolean updated = false;
+        private int idleCount = 0;
+        private long nextTickNanos = 0;
+        private volatile int parkGeneration = 0; // a timer only resubmits the park it was started for
+        private volatile ScheduledFuture<?> parkTimer = null;
+
+        ComponentTask(CoreComponent component){
+            this.component = component;
+        }
+
+        @Override
+        public void run(){
+            if(!WorkStealingScheduler.this.running){
+                return;
+            }
+            if(this.component.isExecutionPaused()){
+                this.state.set(PARKED); // resumeExecution wakes it up again
+                return;
+            }
+            IdleStrategy idle = WorkStealingScheduler.this.core.idleStrategy;
+            boolean didWork;
+            long start = System.nanoTime();
+            if(this.signalled){
+                this.signalled = false;
+                this.idleCount = 0;
+            }
+            if(this.updated && this.component.getTickPeriodNanos() > 0 && start - this.nextTickNanos < 0){
+                this.park(this.nextTickNanos - start); // woken before its tick, same as the backing threads it only steps when due
+                return;
+            }
+            try{
+                if(!this.updated){ // same as the backing threads, update runs on the thread that steps the component
+                    this.updated = true;
+                    this.component.primitiveUpdate(WorkStealingScheduler.this.core);
+                    this.nextTickNanos = start;
+                }
+                didWork = this.component.scheduledStep(WorkStealingScheduler.this.core,
+                        this.component.getTickPeriodNanos() > 0 ? this.nextTickNanos : 0);
+            }catch(Throwable e){
+                // only update can throw here, scheduledStep reports to the supervisor itself
+                WorkStealingScheduler.this.core.supervisor.onFailure(this.component, e);
+                didWork = false;
+            }
+            long end = System.nanoTime();
+            WorkStealingScheduler.this.pool.pullSubmission();
+            long period = this.component.getTickPeriodNanos();
+            if(period > 0){
+                this.nextTickNanos = this.component.nextTickAfter(this.nextTickNanos, start, end);
+                this.park(this.nextTickNanos - end);
+            }else if(didWork || this.signalled){
+                this.idleCount = 0;
+                WorkStealingScheduler.this.pool.execute(this);
+            }else if(this.component.isWaitingForSignal()){
+                this.park(Long.MAX_VALUE); // event driven, only wake() brings it back
+            }else if(this.idleCount < idle.spinTries + idle.yieldTries){
+                // spin/yield phase, going to the back of the queue lets every other task run first
+                this.idleCount += 1;
+                WorkStealingScheduler.this.pool.execute(this);
+            }else{
+                this.park(idle.parkNanosFor(this.idleCount));
+                if(this.idleCount < Integer.MAX_VALUE){
+                    this.idleCount += 1;
+                }
+            }
+        }
+
+        private void park(long nanos){
+            int generation = this.parkGeneration + 1; // before PARKED, nothing else can run the task until then
+            this.parkGeneration = generation;
+            this.state.set(PARKED);
+            if(this.signalled){ // woken while we were stepping
+                this.wake();
+                return;
+            }
+            if(nanos <= 0){
+                this.wake();
+                return;
+            }
+            if(nanos == Long.MAX_VALUE){
+                return;
+            }
+            this.parkTimer = WorkStealingScheduler.this.timer.schedule(() -> {
+                if(this.parkGeneration == generation){ // otherwise a wake already ran it and it parked again since
+                    this.resubmit();
+                }
+            }, nanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void resubmit(){
+            if(!this.component.isExecutionPaused() && this.state.compareAndSet(PARKED, SCHEDULED)){
+                ScheduledFuture<?> pending = this.parkTimer;
+                if(pending != null){ // woken early, the timer has nothing left to do
+                    this.parkTimer = null;
+                    pending.cancel(false);
+                }
+                WorkStealingScheduler.this.pool.execute(this);
+            }
+        }
+
+        @Override
+        public void wake(){
+            this.signalled = true;
+            this.resubmit();
+        }
+    }
+
+    @Override
+    public void start(ArrayList<CoreComponent> components){
+        this.running = true;
+        for(CoreComponent comp: components){
+            ComponentTask task = new ComponentTask(comp);
+            this.tasks.add(task);
+            comp.setWaker(task);
+        }
+        for(ComponentTask task: this.tasks){
+            task.wake();
+        }
+    }
+
+    @Override
+    public void stop(){
+        this.running = false;
+        for(ComponentTask task: this.tasks){
+            task.component.setWaker(null);
+        }
+        this.timer.shutdownNow();
+        this.pool.shutdown();
+    }
+
+    @Override
+    public boolean awaitStopped(long timeoutMillis) throws InterruptedException{
+        if(ForkJoinTask.getPool() == this.pool){ // one of our own workers, it can't wait for itself
+            long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+            while(this.pool.getActiveThreadCount() > 1){
+                if(System.nanoTime() - deadline >= 0){
+                    return false;
+                }
+                LockSupport.parkNanos(100_000);
+            }
+            return true;
+        }
+        return this.pool.awaitTermination(Math.max(1, timeoutMillis), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getStatus(){
+        return "work-stealing pool, parallelism: " + this.pool.getParallelism()
+                + ", active workers: " + this.pool.getActiveThreadCount()
+                + ", steals: " + this.pool.getStealCount()
+                + ", queued steps: " + this.pool.getQueuedTaskCount()
+                + ", components: " + this.tasks.size();
+    }
+}
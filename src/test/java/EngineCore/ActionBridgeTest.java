@@ -0,0 +1,173 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import EngineCore.Actions.ActionDataContainer;
+import EngineCore.DefaultComponents.Extra.Bridge.ActionBridge;
+
+// two engines in this process talking through bridges on socket files in a temp dir
+public class ActionBridgeTest {
+    private final ArrayList<EngineCore> engines = new ArrayList<>();
+    private Path dir;
+
+    private Path socket(String name) throws IOException{
+        if(this.dir == null){
+            this.dir = Files.createTempDirectory("bridge");
+        }
+        return this.dir.resolve(name + ".sock");
+    }
+
+    private ActionBridge bridge(Path socketPath){
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents(); // no console, its step blocks on input
+        core.threads = 1;
+        ActionBridge bridge = new ActionBridge("bridge", true, core, socketPath);
+        core.addComponent(bridge);
+        this.engines.add(core);
+        return bridge;
+    }
+
+    private static void start(ActionBridge bridge){
+        bridge.core.init();
+        bridge.core.start();
+    }
+
+    @AfterEach
+    public void exitEngines() throws IOException{
+        for(EngineCore core: this.engines){
+            core.exit();
+        }
+        this.engines.clear();
+        if(this.dir != null){
+            try(var files = Files.list(this.dir)){
+                for(Path p: files.toList()){
+                    Files.deleteIfExists(p);
+                }
+            }
+            Files.deleteIfExists(this.dir);
+        }
+    }
+
+    // the bridges connect and subscribe in the background, so keep triggering until the other side got something
+    private static void triggerUntil(Runnable trigger, BooleanSupplier delivered, String what) throws InterruptedException{
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while(!delivered.getAsBoolean()){
+            if(System.nanoTime() - deadline > 0){
+                throw new AssertionError(what + " didn't arrive in 10s");
+            }
+            trigger.run();
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<Object> record(EngineCore core, String action){
+        List<Object> got = new CopyOnWriteArrayList<>();
+        core.subscribeToAction(action, (ActionDataContainer data) -> got.add(data.getValue()));
+        return got;
+    }
+
+    @Test
+    public void payloadBiggerThanTheBuffersRoundTrips() throws Exception{
+        ActionBridge a = this.bridge(this.socket("a"));
+        ActionBridge b = this.bridge(this.socket("b"));
+        a.core.addAction("blob", new byte[0]);
+        b.core.addAction("blob", new byte[0]);
+        a.publish("blob");
+        b.subscribe(a.socketPath, "blob");
+        List<Object> got = record(b.core, "blob");
+        start(a);
+        start(b);
+
+        byte[] big = new byte[1024 * 1024]; // the bridges' buffers are 64KB
+        for(int i = 0; i < big.length; i++){
+            big[i] = (byte) (i * 31 + (i >> 12));
+        }
+        triggerUntil(() -> a.core.getActionFromName("blob").trigger(new ActionDataContainer<>(big)),
+                () -> !got.isEmpty(), "the 1MB payload");
+        assertArrayEquals(big, (byte[]) got.get(0));
+
+        // small ones still go through after it, in order
+        int before = got.size();
+        for(int i = 0; i < 100; i++){
+            a.core.getActionFromName("blob").trigger(new ActionDataContainer<>(new byte[]{(byte) i}));
+        }
+        triggerUntil(() -> {}, () -> got.size() >= before + 100, "the small payloads");
+        for(int i = 0; i < 100; i++){
+            assertArrayEquals(new byte[]{(byte) i}, (byte[]) got.get(got.size() - 100 + i));
+        }
+        assertEquals(0, a.getDroppedCount(), "dropped by the sender");
+    }
+
+    @Test
+    public void subscriberResubscribesWhenThePublisherRestarts() throws Exception{
+        Path aPath = this.socket("a");
+        ActionBridge a = this.bridge(aPath);
+        ActionBridge b = this.bridge(this.socket("b"));
+        a.core.addAction("tick", "");
+        b.core.addAction("tick", "");
+        a.publish("tick");
+        b.subscribe(aPath, "tick");
+        List<Object> got = record(b.core, "tick");
+        start(a);
+        start(b);
+        triggerUntil(() -> a.core.getActionFromName("tick").trigger(new ActionDataContainer<>("first")),
+                () -> got.contains("first"), "the first publisher's event");
+
+        a.core.exit(); // the other process goes away...
+        this.engines.remove(a.core);
+        assertTrue(Files.notExists(aPath), "socket file left behind");
+        ActionBridge restarted = this.bridge(aPath); // ...and comes back on the same path
+        restarted.core.addAction("tick", "");
+        restarted.publish("tick");
+        start(restarted);
+        triggerUntil(() -> restarted.core.getActionFromName("tick").trigger(new ActionDataContainer<>("second")),
+                () -> got.contains("second"), "the restarted publisher's event");
+    }
+
+    @Test
+    public void eventsFromAPeerAreNotEchoedBack() throws Exception{
+        ActionBridge a = this.bridge(this.socket("a"));
+        ActionBridge b = this.bridge(this.socket("b"));
+        for(ActionBridge bridge: new ActionBridge[]{a, b}){
+            bridge.core.addAction("chat", "");
+            bridge.publish("chat");
+        }
+        a.subscribe(b.socketPath, "chat");
+        b.subscribe(a.socketPath, "chat");
+        List<Object> onA = record(a.core, "chat");
+        List<Object> onB = record(b.core, "chat");
+        start(a);
+        start(b);
+        triggerUntil(() -> a.core.getActionFromName("chat").trigger(new ActionDataContainer<>("a?")),
+                () -> onB.contains("a?"), "a's event on b");
+        triggerUntil(() -> b.core.getActionFromName("chat").trigger(new ActionDataContainer<>("b?")),
+                () -> onA.contains("b?"), "b's event on a");
+
+        Thread.sleep(300); // the last retries of those can still be on their way
+
+        long receivedA = a.getReceivedCount();
+        long receivedB = b.getReceivedCount();
+        int sizeA = onA.size();
+        int sizeB = onB.size();
+        a.core.getActionFromName("chat").trigger(new ActionDataContainer<>("hello"));
+        triggerUntil(() -> {}, () -> onB.contains("hello"), "hello on b");
+        Thread.sleep(300); // an echo would be back by now
+        assertEquals(sizeA + 1, onA.size(), "triggers on a (its own one only)");
+        assertEquals(sizeB + 1, onB.size(), "triggers on b");
+        assertEquals(receivedA, a.getReceivedCount(), "events a got back from b");
+        assertEquals(receivedB + 1, b.getReceivedCount(), "events b got from a");
+    }
+}
@@ -0,0 +1,182 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import EngineCore.Actions.ActionDataContainer;
+import EngineCore.Journal.ActionJournal;
+import EngineCore.Journal.BasicActionCodec;
+import EngineCore.Journal.JournalReplayer;
+
+// write -> rotate -> read back: small segments so a few thousand events go through many rotations
+public class ActionJournalTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    private static Object valueFor(int i){
+        switch(i % 6){
+            case 0: return i;
+            case 1: return (long) i << 20;
+            case 2: return i + 0.25;
+            case 3: return "event " + i;
+            case 4: return new byte[]{(byte) i, (byte) (i >> 8), 42};
+            default: return null;
+        }
+    }
+
+    private static void assertValue(Object expected, Object actual, String what){
+        if(expected instanceof byte[]){
+            assertArrayEquals((byte[]) expected, (byte[]) actual, what);
+        }else{
+            assertEquals(expected, actual, what);
+        }
+    }
+
+    private long segmentFiles() throws IOException{
+        try(var files = Files.list(this.dir)){
+            return files.filter((Path p) -> p.getFileName().toString().endsWith(".journal")).count();
+        }
+    }
+
+    @Test
+    public void writeRotateReadRoundTrip() throws IOException{
+        ActionJournal journal = new ActionJournal(this.dir, new BasicActionCodec(), SEGMENT_SIZE, 0);
+        int events = 3_000;
+        for(int i = 0; i < events; i++){
+            journal.append("action" + (i % 7), valueFor(i));
+        }
+        journal.close();
+        assertEquals(events, journal.getRecordedCount());
+        assertEquals(0, journal.getDroppedCount());
+        assertTrue(this.segmentFiles() > 10, "only " + this.segmentFiles() + " segments, the test should rotate a lot");
+
+        List<JournalReplayer.Record> records = new ArrayList<>();
+        long read = new JournalReplayer(this.dir).read(records::add);
+        assertEquals(events, read);
+        long lastTimestamp = Long.MIN_VALUE;
+        for(int i = 0; i < events; i++){
+            JournalReplayer.Record r = records.get(i);
+            assertEquals("action" + (i % 7), r.actionName, "name of event " + i);
+            assertValue(valueFor(i), r.value, "value of event " + i);
+            assertTrue(r.timestampNanos >= lastTimestamp, "event " + i + " went back in time");
+            lastTimestamp = r.timestampNanos;
+        }
+    }
+
+    // every segment defines its own names, so what's left after the old ones are deleted still reads on its own
+    @Test
+    public void maxSegmentsKeepsAReadableTail() throws IOException{
+        ActionJournal journal = new ActionJournal(this.dir, new BasicActionCodec(), SEGMENT_SIZE, 3);
+        int events = 3_000;
+        for(int i = 0; i < events; i++){
+            journal.append("action" + (i % 7), i);
+        }
+        journal.close();
+        assertTrue(this.segmentFiles() <= 4, this.segmentFiles() + " segments left"); // the kept ones + the current one
+
+        List<JournalReplayer.Record> records = new ArrayList<>();
+        new JournalReplayer(this.dir).read(records::add);
+        assertTrue(!records.isEmpty() && records.size() < events, records.size() + " events left");
+        int first = (Integer) records.get(0).value;
+        for(int i = 0; i < records.size(); i++){ // a contiguous run up to the last event
+            assertEquals(first + i, (int) (Integer) records.get(i).value);
+            assertEquals("action" + ((first + i) % 7), records.get(i).actionName);
+        }
+        assertEquals(events - 1, first + records.size() - 1);
+    }
+
+    // concurrent writers racing each other through the rotations: nothing lost, each writer's events stay in its order
+    @Test
+    public void concurrentWritersThroughRotations() throws Exception{
+        ActionJournal journal = new ActionJournal(this.dir, new BasicActionCodec(), SEGMENT_SIZE, 0);
+        int writers = 4;
+        int perWriter = 5_000;
+        Thread[] threads = new Thread[writers];
+        for(int w = 0; w < writers; w++){
+            String name = "writer" + w;
+            threads[w] = new Thread(() -> {
+                for(int i = 0; i < perWriter; i++){
+                    journal.append(name, i);
+                }
+            });
+            threads[w].start();
+        }
+        for(Thread t: threads){
+            t.join();
+        }
+        journal.close();
+        assertEquals((long) writers * perWriter, journal.getRecordedCount());
+
+        Map<String, Integer> next = new HashMap<>();
+        long read = new JournalReplayer(this.dir).read((JournalReplayer.Record r) -> {
+            int expected = next.getOrDefault(r.actionName, 0);
+            assertEquals(expected, (int) (Integer) r.value, "next event of " + r.actionName);
+            next.put(r.actionName, expected + 1);
+        });
+        assertEquals((long) writers * perWriter, read);
+    }
+
+    // the engine side: triggers go into the journal, a replay triggers them again on another engine, and a failing
+    // codec goes to the engine's error handler instead of the triggering thread
+    @Test
+    public void engineRecordsAndReplays() throws IOException{
+        EngineCore recording = new EngineCore(false, null);
+        recording.wipeComponents();
+        List<String> errors = new CopyOnWriteArrayList<>();
+        recording.setErrorHandler((String source, Throwable error) -> errors.add(source));
+        recording.addAction("text", "");
+        recording.addIntAction("count", 0);
+        recording.addAction("broken", 0);
+        BasicActionCodec basic = new BasicActionCodec();
+        recording.startJournal(new ActionJournal(this.dir, new BasicActionCodec(){
+            @Override
+            public void encode(String actionName, Object value, ByteBuffer out){
+                if(actionName.equals("broken")){
+                    throw new IllegalStateException("can't encode " + value);
+                }
+                basic.encode(actionName, value, out);
+            }
+        }, SEGMENT_SIZE, 0));
+        for(int i = 0; i < 500; i++){
+            recording.getActionFromName("text").trigger(new ActionDataContainer<>("t" + i));
+            recording.getIntAction("count").trigger(i);
+        }
+        recording.getActionFromName("broken").trigger(new ActionDataContainer<>(1));
+        ActionJournal journal = recording.stopJournal();
+        assertEquals(1_000, journal.getRecordedCount());
+        assertEquals(1, journal.getDroppedCount(), "events the codec couldn't encode");
+        assertEquals(List.of("journal codec, action broken"), errors);
+
+        EngineCore replaying = new EngineCore(false, null);
+        replaying.wipeComponents();
+        replaying.addAction("text", "");
+        replaying.addIntAction("count", 0);
+        List<Object> texts = new ArrayList<>();
+        int[] countSum = {0};
+        replaying.subscribeToAction("text", (ActionDataContainer data) -> texts.add(data.getValue()));
+        replaying.getIntAction("count").subscribeValue((int value) -> countSum[0] += value);
+        JournalReplayer.Result result = new JournalReplayer(this.dir).replay(replaying, 0);
+        assertEquals(1_000, result.replayed);
+        assertEquals(0, result.unknownAction);
+        assertEquals(500, texts.size());
+        assertEquals("t0", texts.get(0));
+        assertEquals("t499", texts.get(499));
+        assertEquals(499 * 500 / 2, countSum[0]);
+    }
+}
@@ -0,0 +1,132 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.Actions.Action;
+import EngineCore.Actions.ActionDataContainer;
+
+// subscriptions to actions that don't exist yet, and subscribers coming and going while an action is being triggered
+public class ActionSubscriptionTest {
+
+    private static EngineCore engine(){
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents();
+        return core;
+    }
+
+    @Test
+    public void pendingSubscriptionsAreBoundByAddActionWithoutSteps(){
+        EngineCore core = engine();
+        AtomicInteger calls = new AtomicInteger();
+        for(int i = 0; i < 1_000; i++){
+            core.subscribeToAction("late", (ActionDataContainer data) -> calls.incrementAndGet());
+        }
+        Consumer<ActionDataContainer> removed = core.subscribeToAction("late", (ActionDataContainer data) -> calls.addAndGet(1_000_000));
+        assertEquals(1_001, core.getPendingSubscriptionCount());
+        assertTrue(core.unsubscribeFromAction("late", removed), "unsubscribe while still pending");
+        assertFalse(core.unsubscribeFromAction("late", removed), "unsubscribe twice");
+
+        core.addAction("late", 0);
+        assertEquals(0, core.getPendingSubscriptionCount());
+        core.getActionFromName("late").trigger();
+        assertEquals(1_000, calls.get());
+    }
+
+    // subscribeToAction and addAction for the same names on two threads: every subscription ends up on its action once
+    @Test
+    public void subscriptionsRacingAddActionAreNeverLost() throws InterruptedException{
+        int names = 2_000;
+        for(int round = 0; round < 20; round++){
+            EngineCore core = engine();
+            AtomicInteger[] calls = new AtomicInteger[names];
+            for(int i = 0; i < names; i++){
+                calls[i] = new AtomicInteger();
+            }
+            CountDownLatch go = new CountDownLatch(1);
+            Thread subscriber = new Thread(() -> {
+                awaitQuietly(go);
+                for(int i = 0; i < names; i++){
+                    AtomicInteger c = calls[i];
+                    core.subscribeToAction("action" + i, (ActionDataContainer data) -> c.incrementAndGet());
+                }
+            });
+            Thread creator = new Thread(() -> {
+                awaitQuietly(go);
+                for(int i = 0; i < names; i++){
+                    core.addAction("action" + i, 0);
+                }
+            });
+            subscriber.start();
+            creator.start();
+            go.countDown();
+            subscriber.join();
+            creator.join();
+
+            assertEquals(0, core.getPendingSubscriptionCount(), "round " + round + ": still pending");
+            for(int i = 0; i < names; i++){
+                core.getActionFromName("action" + i).trigger();
+                assertEquals(1, calls[i].get(), "round " + round + ": calls of action" + i);
+            }
+        }
+    }
+
+    // the dispatch loop reads a snapshot of the subscribers, so changing them from other threads never makes a trigger
+    // skip or repeat a subscriber that stays subscribed
+    @Test
+    public void subscribeAndUnsubscribeDuringDispatch() throws InterruptedException{
+        EngineCore core = engine();
+        core.addAction("busy", 0);
+        Action<Integer> action = core.getActionFromName("busy");
+        AtomicLong stable = new AtomicLong();
+        action.subscribe((ActionDataContainer data) -> stable.incrementAndGet());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong churned = new AtomicLong();
+        AtomicInteger failedUnsubscribes = new AtomicInteger();
+        Thread[] churners = new Thread[3];
+        for(int t = 0; t < churners.length; t++){
+            churners[t] = new Thread(() -> {
+                while(running.get()){
+                    Consumer<ActionDataContainer> callback = core.subscribeToAction("busy", (ActionDataContainer data) -> churned.incrementAndGet());
+                    if(!core.unsubscribeFromAction("busy", callback)){
+                        failedUnsubscribes.incrementAndGet();
+                    }
+                }
+            });
+            churners[t].start();
+        }
+        int triggers = 200_000;
+        for(int i = 0; i < triggers; i++){
+            action.trigger(new ActionDataContainer<>(i));
+        }
+        running.set(false);
+        for(Thread t: churners){
+            t.join();
+        }
+        assertEquals(0, failedUnsubscribes.get(), "subscribed callbacks that couldn't be unsubscribed");
+        assertEquals(triggers, stable.get(), "calls of the subscriber that stayed");
+
+        long before = churned.get();
+        action.trigger();
+        assertEquals(triggers + 1, stable.get());
+        assertEquals(before, churned.get(), "a removed subscriber was still called");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch){
+        try{
+            latch.await();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.Actions.Action;
+import EngineCore.Actions.ActionDataContainer;
+import EngineCore.Actions.AsyncDispatcher;
+import EngineCore.Actions.AsyncDispatcher.Backpressure;
+
+// the three backpressure modes of Action.dispatchAsync, and publishers racing the dispatcher being stopped
+public class AsyncDispatchTest {
+    private static final int CAPACITY = 4;
+
+    // the first value holds the dispatcher in its subscriber until release, so the ring fills up behind it
+    private static class Gate {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> got = new CopyOnWriteArrayList<>();
+
+        void accept(ActionDataContainer data){
+            this.got.add((Integer) data.getValue());
+            this.entered.countDown();
+            try{
+                this.release.await();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Action<Integer> action(Gate gate){
+        Action<Integer> action = new Action<>("async", 0);
+        action.subscribe(gate::accept);
+        return action;
+    }
+
+    // 0 goes to the held dispatcher, 1..CAPACITY fill the ring, returns what the rest of the publishes returned
+    private static List<Boolean> overfill(Action<Integer> action, Gate gate, int total) throws InterruptedException{
+        action.trigger(new ActionDataContainer<>(0));
+        assertTrue(gate.entered.await(5, TimeUnit.SECONDS), "the dispatcher never took the first value");
+        AsyncDispatcher<Integer> d = action.getDispatcher();
+        for(int i = 1; i <= CAPACITY; i++){
+            assertTrue(d.publish(new ActionDataContainer<>(i)), "publish " + i + " with room left");
+        }
+        List<Boolean> res = new ArrayList<>();
+        for(int i = CAPACITY + 1; i < total; i++){
+            res.add(d.publish(new ActionDataContainer<>(i)));
+        }
+        return res;
+    }
+
+    private static void awaitDelivered(AsyncDispatcher<?> d, long count) throws InterruptedException{
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while(d.getDelivered() < count){
+            if(System.nanoTime() - deadline > 0){
+                throw new AssertionError("delivered " + d.getDelivered() + " of " + count + " in 5s");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void dropNewestRejectsWhatDoesntFit() throws InterruptedException{
+        Gate gate = new Gate();
+        Action<Integer> action = action(gate);
+        AsyncDispatcher<Integer> d = action.dispatchAsync(CAPACITY, Backpressure.DROP_NEWEST, 1);
+        for(boolean published: overfill(action, gate, 10)){
+            assertFalse(published, "publish into a full DROP_NEWEST ring");
+        }
+        gate.release.countDown();
+        awaitDelivered(d, 5);
+        assertTrue(action.dispatchSync(5_000));
+        assertEquals(List.of(0, 1, 2, 3, 4), gate.got);
+        assertEquals(5, d.getDropped());
+    }
+
+    @Test
+    public void dropOldestKeepsTheLatest() throws InterruptedException{
+        Gate gate = new Gate();
+        Action<Integer> action = action(gate);
+        AsyncDispatcher<Integer> d = action.dispatchAsync(CAPACITY, Backpressure.DROP_OLDEST, 1);
+        for(boolean published: overfill(action, gate, 10)){
+            assertTrue(published, "publish into a full DROP_OLDEST ring");
+        }
+        assertEquals(CAPACITY, d.getBacklog());
+        gate.release.countDown();
+        awaitDelivered(d, 5);
+        assertTrue(action.dispatchSync(5_000));
+        assertEquals(List.of(0, 6, 7, 8, 9), gate.got);
+        assertEquals(5, d.getDropped());
+    }
+
+    @Test
+    public void blockWaitsForRoomAndLosesNothing() throws InterruptedException{
+        Gate gate = new Gate();
+        Action<Integer> action = action(gate);
+        AsyncDispatcher<Integer> d = action.dispatchAsync(CAPACITY, Backpressure.BLOCK, 2);
+        action.trigger(new ActionDataContainer<>(0));
+        assertTrue(gate.entered.await(5, TimeUnit.SECONDS), "the dispatcher never took the first value");
+        CountDownLatch done = new CountDownLatch(1);
+        Thread publisher = new Thread(() -> {
+            for(int i = 1; i < 50; i++){
+                action.trigger(new ActionDataContainer<>(i));
+            }
+            done.countDown();
+        });
+        publisher.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS), "the publisher didn't wait for room");
+        assertEquals(CAPACITY, d.getBacklog());
+        gate.release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS), "the publisher is still blocked");
+        awaitDelivered(d, 50);
+        assertTrue(action.dispatchSync(5_000));
+        for(int i = 0; i < 50; i++){
+            assertEquals(i, (int) gate.got.get(i));
+        }
+        assertEquals(0, d.getDropped());
+    }
+
+    // publishers that got past the running check while the dispatcher closes: every value is delivered or counted as
+    // dropped, none is left in a slot nobody reads anymore
+    @Test
+    public void dropOldestRacingStopLosesNothingUncounted() throws InterruptedException{
+        for(int round = 0; round < 200; round++){
+            Action<Integer> action = new Action<>("race", 0);
+            AtomicLong got = new AtomicLong();
+            action.subscribe((ActionDataContainer data) -> got.incrementAndGet());
+            AsyncDispatcher<Integer> d = action.dispatchAsync(8, Backpressure.DROP_OLDEST, 4);
+            int publishers = 4;
+            AtomicLong attempts = new AtomicLong();
+            CountDownLatch started = new CountDownLatch(publishers);
+            Thread[] threads = new Thread[publishers];
+            for(int t = 0; t < publishers; t++){
+                threads[t] = new Thread(() -> {
+                    started.countDown();
+                    for(int i = 0; i < 2_000; i++){
+                        d.publish(new ActionDataContainer<>(i));
+                        attempts.incrementAndGet();
+                    }
+                });
+                threads[t].start();
+            }
+            started.await();
+            assertTrue(action.dispatchSync(5_000), "round " + round + ": the dispatcher didn't stop");
+            for(Thread t: threads){
+                t.join();
+            }
+            assertEquals(got.get(), d.getDelivered(), "round " + round + ": delivered");
+            assertEquals(attempts.get(), d.getDelivered() + d.getDropped(), "round " + round + ": delivered + dropped");
+            assertEquals(0, d.getBacklog(), "round " + round + ": left in the ring");
+            assertFalse(d.publish(new ActionDataContainer<>(-1)), "round " + round + ": publish after stop");
+        }
+    }
+
+    @Test
+    public void subscriberErrorsGoToTheEnginesHandler() throws InterruptedException{
+        EngineCore core = new EngineCore(false, null);
+        List<String> sources = new CopyOnWriteArrayList<>();
+        core.setErrorHandler((String source, Throwable error) -> sources.add(source + ": " + error.getMessage()));
+        core.addAction("failing", 0);
+        Action<Integer> action = core.getActionFromName("failing");
+        action.subscribe((ActionDataContainer data) -> {
+            throw new IllegalStateException("bad " + data.getValue());
+        });
+        AsyncDispatcher<Integer> d = action.dispatchAsync(CAPACITY, Backpressure.BLOCK, 1);
+        action.trigger(new ActionDataContainer<>(1));
+        action.trigger(new ActionDataContainer<>(2));
+        awaitDelivered(d, 2);
+        assertTrue(action.dispatchSync(5_000));
+        assertEquals(List.of("action failing: bad 1", "action failing: bad 2"), sources);
+    }
+}
@@ -0,0 +1,113 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.Threading.LatencyHistogram;
+
+// bucket precision, percentiles and the rolling window, on an explicit clock
+public class LatencyHistogramTest {
+    private static final long SLOT = LatencyHistogram.SLOT_NANOS;
+    private static final long T0 = 1_000 * SLOT; // start of a slot
+
+    // the percentile of a value is the top of its bucket: never below it, at most 12.5% above
+    @Test
+    public void bucketsAreWithinAnEighth(){
+        for(long v = 1; v < 1L << 40; v = v * 3 / 2 + 1){
+            LatencyHistogram h = new LatencyHistogram();
+            h.record(T0, v);
+            h.record(T0, v * 100); // so the result isn't just capped at the max
+            long p50 = h.snapshot(SLOT, T0).p50Nanos;
+            assertTrue(p50 >= v && p50 <= v + v / 8, v + " came out as " + p50);
+        }
+        for(long v = 0; v < 8; v++){ // exact below 8
+            LatencyHistogram h = new LatencyHistogram();
+            h.record(T0, v);
+            h.record(T0, 1_000);
+            assertEquals(v, h.snapshot(SLOT, T0).p50Nanos);
+        }
+    }
+
+    @Test
+    public void outOfRangeDurations(){
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(T0, -5); // a clock that went backwards, counted as 0
+        h.record(T0, 1L << 50); // above the top bucket
+        LatencyHistogram.Snapshot s = h.snapshot(SLOT, T0);
+        assertEquals(2, s.count);
+        assertEquals(0, s.p50Nanos);
+        assertEquals(1L << 50, s.p99Nanos); // the last bucket is capped at the max
+        assertEquals(1L << 50, s.maxNanos);
+    }
+
+    @Test
+    public void percentiles(){
+        LatencyHistogram h = new LatencyHistogram();
+        for(int i = 0; i < 990; i++){
+            h.record(T0 + i, 1_000);
+        }
+        for(int i = 0; i < 9; i++){
+            h.record(T0 + i, 100_000);
+        }
+        h.record(T0, 10_000_000);
+        LatencyHistogram.Snapshot s = h.snapshot(SLOT, T0 + SLOT - 1);
+        assertEquals(1_000, s.count);
+        assertTrue(s.p50Nanos >= 1_000 && s.p50Nanos <= 1_125, "p50 " + s.p50Nanos);
+        assertTrue(s.p99Nanos >= 1_000 && s.p99Nanos <= 1_125, "p99 " + s.p99Nanos);
+        assertTrue(s.p999Nanos >= 100_000 && s.p999Nanos <= 112_500, "p999 " + s.p999Nanos);
+        assertEquals(10_000_000, s.maxNanos);
+
+        LatencyHistogram empty = new LatencyHistogram();
+        LatencyHistogram.Snapshot none = empty.snapshot(SLOT, T0);
+        assertEquals(0, none.count);
+        assertEquals(0, none.p50Nanos);
+        assertEquals(0, none.maxNanos);
+    }
+
+    @Test
+    public void windowRollsOverSlots(){
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(T0, 100);
+        h.record(T0 + SLOT, 200);
+        h.record(T0 + 2 * SLOT + 10, 300);
+        long now = T0 + 2 * SLOT + 20;
+        assertEquals(1, h.snapshot(SLOT, now).count); // rounded up to whole slots, only the current one
+        assertEquals(2, h.snapshot(SLOT + 1, now).count);
+        assertEquals(3, h.snapshot(3 * SLOT, now).count);
+        assertEquals(300, h.snapshot(SLOT, now).maxNanos);
+        assertEquals(300, h.snapshot(3 * SLOT, now).maxNanos);
+        // nothing recorded for a while, the old slots age out of every window
+        long later = T0 + (LatencyHistogram.SLOTS + 5) * SLOT;
+        assertEquals(0, h.snapshot(Long.MAX_VALUE / 2, later).count);
+    }
+
+    // a slot is reused SLOTS slots later, its old counts must be gone
+    @Test
+    public void reusedSlotsStartEmpty(){
+        LatencyHistogram h = new LatencyHistogram();
+        for(int i = 0; i < 50; i++){
+            h.record(T0, 5_000_000);
+        }
+        h.record(T0 + SLOT, 100);
+        long reuse = T0 + LatencyHistogram.SLOTS * SLOT; // same slot as T0
+        h.record(reuse, 200);
+        LatencyHistogram.Snapshot all = h.snapshot(LatencyHistogram.SLOTS * SLOT, reuse);
+        assertEquals(2, all.count);
+        assertEquals(200, all.maxNanos);
+        // windows longer than the ring are clamped to it
+        assertEquals(2, h.snapshot(Long.MAX_VALUE / 2, reuse).count);
+    }
+
+    // System.nanoTime() can be negative, slots right before and after 0 are different slots
+    @Test
+    public void negativeClock(){
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-1, 100);
+        h.record(0, 200);
+        assertEquals(1, h.snapshot(SLOT, 0).count);
+        assertEquals(200, h.snapshot(SLOT, 0).maxNanos);
+        assertEquals(2, h.snapshot(2 * SLOT, 0).count);
+    }
+}
@@ -0,0 +1,108 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.Threading.ExecutionMode;
+import EngineCore.Threading.WaveScheduler;
+
+// same components and worker count = the same steps on the same workers in the same order, every run (see WaveScheduler)
+public class LockstepDeterminismTest {
+    private static final int WORKERS = 3;
+    private static final long TICKS = 2_000;
+
+    // what each worker thread stepped, in order. a worker only appends to its own list
+    private final Map<String, List<String>> steps = new ConcurrentHashMap<>();
+
+    private class Recorder extends CoreComponent {
+        private final Recorder producer;
+        volatile long count = 0;
+
+        Recorder(String name, EngineCore core, Recorder producer, ComponentType type){
+            super(name, true, core, producer == null ? new ArrayList<>() : new ArrayList<>(List.of(producer.types[0])), type);
+            this.producer = producer;
+        }
+
+        @Override
+        protected void step(EngineCore core){
+            long tick = core.getTick();
+            // the waves run producers first, a consumer always sees this tick's step of what it depends on
+            if(this.producer != null && this.producer.count != tick + 1){
+                throw new IllegalStateException(this.name + " stepped before " + this.producer.name + " in tick " + tick);
+            }
+            this.count += 1;
+            LockstepDeterminismTest.this.steps.computeIfAbsent(Thread.currentThread().getName(), (String n) -> new ArrayList<>())
+                    .add(tick + ":" + this.name);
+        }
+
+        @Override
+        protected void update(EngineCore core){}
+
+        @Override
+        protected int test(TestingEnviromentCore core){
+            return 0;
+        }
+    }
+
+    private Map<String, List<String>> run() throws InterruptedException{
+        this.steps.clear();
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents();
+        core.executionMode = ExecutionMode.LOCKSTEP;
+        core.threads = WORKERS;
+        ArrayList<Recorder> all = new ArrayList<>();
+        Recorder db = new Recorder("db", core, null, ComponentType.DB);
+        all.add(db);
+        Recorder cache = new Recorder("cache", core, db, ComponentType.CACHE);
+        all.add(cache);
+        for(int i = 0; i < 7; i++){
+            all.add(new Recorder("cacheUser" + i, core, cache, ComponentType.OTHER));
+        }
+        for(int i = 0; i < 5; i++){
+            all.add(new Recorder("dbUser" + i, core, db, ComponentType.ERP));
+        }
+        for(Recorder r: all){
+            core.addComponent(r);
+        }
+        core.init();
+        WaveScheduler scheduler = (WaveScheduler) core.scheduler;
+        scheduler.setTickLimit(TICKS);
+        core.start();
+        assertTrue(scheduler.awaitFinished(30_000), "lockstep didn't finish " + TICKS + " ticks in 30s");
+        WaveScheduler.TickStats stats = scheduler.getTickStats();
+        assertEquals(TICKS, stats.ticks);
+        assertEquals(0, stats.skippedSteps, "skipped steps");
+        for(Recorder r: all){
+            assertEquals(TICKS, r.count, "steps of " + r.name);
+        }
+        return new TreeMap<>(this.steps);
+    }
+
+    @Test
+    public void twoRunsStepTheSameComponentsInTheSameOrder() throws InterruptedException{
+        Map<String, List<String>> first = this.run();
+        Map<String, List<String>> second = this.run();
+        assertEquals(WORKERS, first.size(), "workers that stepped something");
+        assertEquals(first.keySet(), second.keySet());
+        for(String worker: first.keySet()){
+            List<String> a = first.get(worker);
+            List<String> b = second.get(worker);
+            assertEquals(a.size(), b.size(), "steps on " + worker);
+            for(int i = 0; i < a.size(); i++){
+                if(!a.get(i).equals(b.get(i))){
+                    throw new AssertionError(worker + " diverged at step " + i + ": " + a.get(i) + " vs " + b.get(i));
+                }
+            }
+        }
+    }
+}
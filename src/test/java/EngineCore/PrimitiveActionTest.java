@@ -0,0 +1,155 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.Actions.ActionDataContainer;
+import EngineCore.Actions.DoubleAction;
+import EngineCore.Actions.IntAction;
+import EngineCore.Actions.LongAction;
+
+// Int/Long/DoubleAction: the value subscribers, the generic paths into them, and triggering without allocating
+public class PrimitiveActionTest {
+
+    private static EngineCore engine(){
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents();
+        return core;
+    }
+
+    @Test
+    public void valueAndContainerSubscribersBothGetTheValue(){
+        EngineCore core = engine();
+        LongAction action = core.addLongAction("counter", 7L);
+        long[] lastValue = {0};
+        List<Object> containers = new ArrayList<>();
+        action.subscribeValue((long value) -> lastValue[0] = value);
+        core.subscribeToAction("counter", (ActionDataContainer data) -> containers.add(data.getValue()));
+
+        action.trigger(42L);
+        assertEquals(42L, lastValue[0]);
+        assertEquals(List.of(42L), containers);
+        action.trigger(); // the last value again
+        assertEquals(List.of(42L, 42L), containers);
+        assertEquals(42L, action.getValue());
+        assertEquals(42L, action.getContainer().getValue());
+        assertEquals(2, action.getSubscriberCount());
+    }
+
+    @Test
+    public void addingTheSameNameReturnsTheRegisteredActionOrThrows(){
+        EngineCore core = engine();
+        DoubleAction first = core.addDoubleAction("ratio", 0.5);
+        assertSame(first, core.addDoubleAction("ratio", 1.0));
+        assertSame(first, core.getDoubleAction("ratio"));
+        assertEquals(0.5, first.getValue());
+        assertThrows(IllegalArgumentException.class, () -> core.addIntAction("ratio", 1));
+        core.addAction("text", "");
+        assertThrows(IllegalArgumentException.class, () -> core.addLongAction("text", 1L));
+    }
+
+    // a null from a generic source has no int for the value subscribers, only the container subscribers see it
+    @Test
+    public void nullContainerKeepsTheValue(){
+        EngineCore core = engine();
+        IntAction action = core.addIntAction("level", 3);
+        int[] valueCalls = {0};
+        List<Object> containers = new ArrayList<>();
+        action.subscribeValue((int value) -> valueCalls[0] += 1);
+        action.subscribe((ActionDataContainer data) -> containers.add(data.getValue()));
+
+        action.trigger(new ActionDataContainer<>(null));
+        assertEquals(0, valueCalls[0], "value subscriber calls");
+        assertEquals(1, containers.size());
+        assertNull(containers.get(0));
+        assertEquals(3, action.getValue());
+
+        action.trigger(new ActionDataContainer<>(9));
+        assertEquals(1, valueCalls[0]);
+        assertEquals(9, action.getValue());
+    }
+
+    @Test
+    public void connectActionsBetweenPrimitiveAndGenericActions(){
+        EngineCore core = engine();
+        IntAction source = core.addIntAction("source", 0);
+        IntAction target = core.addIntAction("target", 0);
+        core.addAction("generic", 0);
+        List<Object> generic = new ArrayList<>();
+        core.subscribeToAction("generic", (ActionDataContainer data) -> generic.add(data.getValue()));
+        int[] got = {0};
+        target.subscribeValue((int value) -> got[0] = value);
+
+        core.connectActions("source", "target"); // straight through as an int
+        core.connectActions("source", "generic"); // boxed for the generic one
+        source.trigger(5);
+        assertEquals(5, got[0]);
+        assertEquals(List.of(5), generic);
+
+        core.connectActions("generic", "target"); // and back into a primitive one
+        core.getActionFromName("generic").trigger(new ActionDataContainer<>(8));
+        assertEquals(8, got[0]);
+    }
+
+    @Test
+    public void pipelineOnAPrimitiveActionUnsubscribes(){
+        EngineCore core = engine();
+        IntAction action = core.addIntAction("input", 0);
+        List<Integer> got = new ArrayList<>();
+        Consumer<ActionDataContainer> subscriber = core.<Integer>pipeAction("input").filter((Integer v) -> v % 2 == 0).forEach(got::add);
+        action.trigger(1);
+        action.trigger(2);
+        assertEquals(List.of(2), got);
+        assertEquals(1, action.getSubscriberCount());
+        assertTrue(core.unsubscribeFromAction("input", subscriber));
+        assertEquals(0, action.getSubscriberCount());
+        action.trigger(4);
+        assertEquals(List.of(2), got);
+    }
+
+    @Test
+    public void triggeringWithValueSubscribersAllocatesNothing(){
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "no per thread allocation counters");
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mx.isThreadAllocatedMemorySupported(), "no per thread allocation counters");
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        EngineCore core = engine();
+        IntAction ints = core.addIntAction("ints", 0);
+        LongAction longs = core.addLongAction("longs", 0L);
+        DoubleAction doubles = core.addDoubleAction("doubles", 0.0);
+        long[] sum = {0};
+        ints.subscribeValue((int value) -> sum[0] += value);
+        longs.subscribeValue((long value) -> sum[0] += value);
+        doubles.subscribeValue((double value) -> sum[0] += (long) value);
+        core.addIntAction("copy", 0);
+        core.connectActions("ints", "copy");
+
+        for(int i = 0; i < 200_000; i++){ // warm up, so the measured loop runs compiled
+            ints.trigger(i);
+            longs.trigger(i);
+            doubles.trigger(i);
+        }
+        long tid = Thread.currentThread().threadId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for(int i = 0; i < 1_000_000; i++){
+            ints.trigger(i + 1000); // outside the Integer cache, a boxed value would allocate
+            longs.trigger(i + 1000L);
+            doubles.trigger(i + 0.5);
+        }
+        long after = mx.getThreadAllocatedBytes(tid);
+        assertTrue(sum[0] != 0);
+        assertEquals(0, after - before, "bytes allocated by 3M triggers");
+    }
+}
@@ -0,0 +1,125 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.Actions.RequestAction;
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+
+// request/reply actions: answered on the responder's thread, and timed out requests don't stay in the inbox
+public class RequestActionTest {
+
+    private static class Responder extends CoreComponent {
+        Responder(String name, EngineCore core){
+            super(name, true, core, ComponentType.IN_MEMORY_CACHE);
+        }
+
+        @Override
+        protected void step(EngineCore core){
+            this.reportIdle();
+        }
+
+        @Override
+        protected void update(EngineCore core){}
+
+        @Override
+        protected int test(TestingEnviromentCore core){
+            return 0;
+        }
+    }
+
+    private static void awaitZero(IntSupplier count, String what) throws InterruptedException{
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while(count.getAsInt() != 0){
+            if(System.nanoTime() - deadline > 0){
+                throw new AssertionError(what + " still at " + count.getAsInt() + " after 5s");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void timedOutRequestsLeaveTheInbox() throws InterruptedException{
+        RequestAction<String, String> action = new RequestAction<>("nobodyServes");
+        List<CompletableFuture<String>> replies = new ArrayList<>();
+        for(int i = 0; i < 1_000; i++){
+            replies.add(action.request("q" + i, 20));
+        }
+        CompletableFuture<String> forever = action.request("no timeout", 0);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> replies.get(0).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException, "failed with " + e.getCause());
+        // the timeouts complete on the future's delay thread, the removal runs right after on that thread
+        awaitZero(() -> action.getQueuedRequests() - 1, "queued requests");
+        for(CompletableFuture<String> reply: replies){
+            assertTrue(reply.isCompletedExceptionally());
+        }
+
+        forever.cancel(false); // cancelling takes it out too
+        awaitZero(action::getQueuedRequests, "queued requests");
+    }
+
+    @Test
+    public void requestsAreAnsweredOnTheRespondersThread() throws Exception{
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents();
+        core.threads = 1;
+        Responder responder = new Responder("cache", core);
+        core.addComponent(responder);
+        core.init();
+        core.start();
+        try{
+            Thread[] handledOn = {null};
+            core.<Integer, Integer>serveRequests("square", responder, (Integer q) -> {
+                handledOn[0] = Thread.currentThread();
+                if(q < 0){
+                    throw new IllegalArgumentException("negative: " + q);
+                }
+                return q * q;
+            });
+            RequestAction<Integer, Integer> action = core.getRequestAction("square");
+            assertEquals(49, (int) action.request(7, 5_000).get(5, TimeUnit.SECONDS));
+            assertTrue(core.threadsList.contains(handledOn[0]), "handled on " + handledOn[0].getName());
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> action.request(-1, 5_000).get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalArgumentException, "failed with " + e.getCause());
+            assertEquals(25, (int) action.request(5, 5_000).get(5, TimeUnit.SECONDS)); // still serving after a failure
+            assertEquals(0, action.getQueuedRequests());
+        }finally{
+            core.exit();
+        }
+    }
+
+    // requests made before anyone serves the action wait for the responder instead of failing
+    @Test
+    public void queuedRequestsAreServedOnceAResponderComesUp() throws Exception{
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents();
+        core.threads = 1;
+        Responder responder = new Responder("late", core);
+        core.addComponent(responder);
+        core.init();
+        core.start();
+        try{
+            RequestAction<String, Integer> action = core.getRequestAction("length");
+            CompletableFuture<Integer> early = action.request("early", 5_000);
+            assertEquals(1, action.getQueuedRequests());
+            core.<String, Integer>serveRequests("length", responder, String::length);
+            assertEquals(5, (int) early.get(5, TimeUnit.SECONDS));
+            assertEquals(0, action.getQueuedRequests());
+        }finally{
+            core.exit();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.Threading.ShutdownReport;
+
+// exit(): consumers exit before what they depend on, whatever doesn't stop in time is reported, and it's for good
+public class ShutdownTest {
+    private final List<String> exited = new CopyOnWriteArrayList<>();
+
+    private class Tracked extends CoreComponent {
+        volatile CountDownLatch stuck = null; // the step waits on it once set
+        final CountDownLatch stepping = new CountDownLatch(1);
+
+        Tracked(String name, EngineCore core, ComponentType type, ComponentType... dependsOn){
+            super(name, true, core, new ArrayList<>(List.of(dependsOn)), type);
+        }
+
+        @Override
+        protected void step(EngineCore core){
+            CountDownLatch s = this.stuck;
+            if(s != null){
+                this.stepping.countDown();
+                try{
+                    s.await();
+                }catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        protected void update(EngineCore core){}
+
+        @Override
+        protected void exit(){
+            ShutdownTest.this.exited.add(this.name);
+        }
+
+        @Override
+        protected int test(TestingEnviromentCore core){
+            return 0;
+        }
+    }
+
+    private static EngineCore engine(){
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents();
+        core.threads = 2;
+        return core;
+    }
+
+    @Test
+    public void consumersExitBeforeWhatTheyDependOn(){
+        EngineCore core = engine();
+        // added producers last, so the order doesn't come from the component list
+        core.addComponent(new Tracked("report", core, ComponentType.OTHER, ComponentType.CACHE));
+        core.addComponent(new Tracked("erp", core, ComponentType.ERP, ComponentType.DB));
+        core.addComponent(new Tracked("cache", core, ComponentType.CACHE, ComponentType.DB));
+        core.addComponent(new Tracked("db", core, ComponentType.DB));
+        core.init();
+        core.start();
+        core.exit();
+
+        assertEquals(4, this.exited.size(), "exited: " + this.exited);
+        assertTrue(this.exited.indexOf("report") < this.exited.indexOf("cache"), "order: " + this.exited);
+        assertTrue(this.exited.indexOf("cache") < this.exited.indexOf("db"), "order: " + this.exited);
+        assertTrue(this.exited.indexOf("erp") < this.exited.indexOf("db"), "order: " + this.exited);
+        ShutdownReport report = core.getLastShutdownReport();
+        assertTrue(report.isClean(), report.toString());
+        assertEquals(List.of("stop load balancer", "stop threads", "stop scheduler", "drain async actions", "exit components",
+                "close journal"), new ArrayList<>(report.getPhaseNanos().keySet()));
+    }
+
+    @Test
+    public void stragglersAreReportedAndNotExited() throws InterruptedException{
+        EngineCore core = engine();
+        core.shutdownDeadlineMillis = 300;
+        Tracked stuck = new Tracked("stuck", core, ComponentType.OTHER);
+        Tracked fine = new Tracked("fine", core, ComponentType.CACHE);
+        core.addComponent(stuck);
+        core.addComponent(fine);
+        core.init();
+        CountDownLatch release = new CountDownLatch(1);
+        stuck.stuck = release;
+        core.start();
+        assertTrue(stuck.stepping.await(5, TimeUnit.SECONDS), "the stuck component never stepped");
+        String stuckThread = core.getComponentBackingThread("stuck").getName();
+        try{
+            long start = System.nanoTime();
+            core.exit();
+            long took = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(took < 300 + 1_000, "exit took " + took + " ms with a 300 ms deadline");
+
+            ShutdownReport report = core.getLastShutdownReport();
+            assertFalse(report.isClean());
+            assertTrue(report.getStragglers().contains("stuck"), "stragglers: " + report.getStragglers());
+            assertTrue(report.getStragglers().contains(stuckThread), "stragglers: " + report.getStragglers());
+            assertFalse(report.getStragglers().contains("fine"), "stragglers: " + report.getStragglers());
+            assertEquals(List.of("fine"), this.exited); // exit() never runs in the middle of a step
+            assertTrue(report.toString().contains("still running at the deadline"), report.toString());
+        }finally{
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void anExitedEngineCantBeRestarted(){
+        EngineCore core = engine();
+        core.addComponent(new Tracked("db", core, ComponentType.DB));
+        core.init();
+        core.start();
+        ShutdownReport restart = core.restart(); // fine before exit
+        assertTrue(restart.isClean(), restart.toString());
+        assertFalse(core.hasExited());
+
+        core.exit();
+        assertTrue(core.hasExited());
+        assertThrows(IllegalStateException.class, () -> core.restart());
+        assertThrows(IllegalStateException.class, () -> core.start());
+        assertThrows(IllegalStateException.class, () -> core.update());
+        assertEquals(List.of("db"), this.exited);
+    }
+}
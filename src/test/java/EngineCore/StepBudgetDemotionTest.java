@@ -0,0 +1,138 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.DefaultComponents.CoreComponent.CoreComponentBackingThread;
+
+// a component that keeps going over its step budget gets a backing thread of its own after demoteAfterOverruns in a row
+public class StepBudgetDemotionTest {
+    private static final long BUDGET_MICROS = 200;
+
+    private static class Worker extends CoreComponent {
+        volatile boolean overrun = false;
+        volatile boolean alternate = false; // over budget every other step only
+        long steps = 0;
+
+        Worker(String name, EngineCore core){
+            super(name, true, core, ComponentType.OTHER);
+        }
+
+        @Override
+        protected void step(EngineCore core){
+            this.steps += 1;
+            if(this.overrun && (!this.alternate || this.steps % 2 == 0)){
+                long until = System.nanoTime() + BUDGET_MICROS * 1000 * 3;
+                while(System.nanoTime() - until < 0){
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        @Override
+        protected void update(EngineCore core){}
+
+        @Override
+        protected int test(TestingEnviromentCore core){
+            return 0;
+        }
+    }
+
+    private EngineCore core;
+    private Worker slow;
+    private Worker other;
+
+    private void start(int demoteAfter){
+        this.core = new EngineCore(false, null);
+        this.core.wipeComponents();
+        this.core.threads = 1;
+        this.core.demoteAfterOverruns = demoteAfter;
+        this.slow = new Worker("slow", this.core);
+        this.slow.setStepBudget(BUDGET_MICROS);
+        this.other = new Worker("other", this.core);
+        this.core.addComponent(this.slow);
+        this.core.addComponent(this.other);
+        this.core.init();
+        this.core.start();
+    }
+
+    @AfterEach
+    public void exit(){
+        if(this.core != null){
+            this.core.exit();
+        }
+    }
+
+    private static void awaitOverruns(Worker w, long overruns) throws InterruptedException{
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while(w.getBudgetOverruns() < overruns){
+            if(System.nanoTime() - deadline > 0){
+                throw new AssertionError(w.name + " only went over its budget " + w.getBudgetOverruns() + " times in 10s");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void demotedAfterOverrunsInARow() throws InterruptedException{
+        this.start(3);
+        CoreComponentBackingThread shared = this.core.getComponentBackingThread("slow");
+        assertSame(shared, this.core.getComponentBackingThread("other"));
+
+        this.slow.overrun = true;
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while(this.core.getComponentBackingThread("slow") == shared){
+            if(System.nanoTime() - deadline > 0){
+                throw new AssertionError("not demoted after " + this.slow.getBudgetOverruns() + " overruns");
+            }
+            Thread.sleep(1);
+        }
+        assertTrue(this.slow.getBudgetOverruns() >= 3, "demoted after " + this.slow.getBudgetOverruns() + " overruns");
+        CoreComponentBackingThread own = this.core.getComponentBackingThread("slow");
+        assertNotSame(shared, own);
+        assertSame(shared, this.core.getComponentBackingThread("other"));
+        assertEquals(1, own.getAttachedComponentInstances().length);
+        assertEquals(2, this.core.threadsList.size());
+
+        // still over its budget, but alone on its thread now: it stays there and no more threads are made for it
+        long overruns = this.slow.getBudgetOverruns();
+        awaitOverruns(this.slow, overruns + 10);
+        Thread.sleep(50); // demotions run on the control thread
+        assertSame(own, this.core.getComponentBackingThread("slow"));
+        assertEquals(2, this.core.threadsList.size());
+        assertFalse(this.core.demoteComponent(this.slow), "demoting a component that's alone");
+    }
+
+    // every other step over budget never makes 3 in a row
+    @Test
+    public void overrunsThatArentInARowDontDemote() throws InterruptedException{
+        this.start(3);
+        CoreComponentBackingThread shared = this.core.getComponentBackingThread("slow");
+        this.slow.alternate = true;
+        this.slow.overrun = true;
+        awaitOverruns(this.slow, 50);
+        Thread.sleep(50);
+        assertSame(shared, this.core.getComponentBackingThread("slow"));
+        assertEquals(1, this.core.threadsList.size());
+    }
+
+    @Test
+    public void zeroNeverDemotes() throws InterruptedException{
+        this.start(0);
+        CoreComponentBackingThread shared = this.core.getComponentBackingThread("slow");
+        this.slow.overrun = true;
+        awaitOverruns(this.slow, 50);
+        Thread.sleep(50);
+        assertSame(shared, this.core.getComponentBackingThread("slow"));
+        assertThrows(IllegalArgumentException.class, () -> this.slow.setStepBudget(-1));
+    }
+}
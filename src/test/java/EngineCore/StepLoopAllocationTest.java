@@ -0,0 +1,84 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.DefaultComponents.CoreComponent.CoreComponentBackingThread;
+
+// the backing thread loop shouldn't allocate anything once it's warmed up (see CoreComponentBackingThread.runLoop)
+public class StepLoopAllocationTest {
+    private static final long WARMUP_LOOPS = 500_000;
+    private static final long MEASURED_LOOPS = 200_000;
+
+    private static class Counter extends CoreComponent {
+        private final boolean idle;
+        long steps = 0;
+
+        Counter(String name, EngineCore core, boolean idle){
+            super(name, true, core, ComponentType.OTHER);
+            this.idle = idle;
+        }
+
+        @Override
+        protected void step(EngineCore core){
+            this.steps += 1;
+            if(this.idle){
+                this.reportIdle();
+            }
+        }
+
+        @Override
+        protected void update(EngineCore core){}
+
+        @Override
+        protected int test(TestingEnviromentCore core){
+            return 0;
+        }
+    }
+
+    @Test
+    public void steadyStateLoopAllocatesNothing() throws InterruptedException{
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "no per thread allocation counters");
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mx.isThreadAllocatedMemorySupported(), "no per thread allocation counters");
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents(); // no console, its step blocks on input
+        core.addComponent(new Counter("busy", core, false));
+        core.addComponent(new Counter("idle", core, true));
+        Counter timed = new Counter("timed", core, false);
+        timed.setTickRate(1000);
+        core.addComponent(timed);
+        core.threads = 1;
+        core.init();
+        core.start();
+        CoreComponentBackingThread thread = core.threadsList.get(0);
+        try{
+            awaitLoops(thread, WARMUP_LOOPS);
+            long before = mx.getThreadAllocatedBytes(thread.threadId());
+            awaitLoops(thread, MEASURED_LOOPS);
+            long after = mx.getThreadAllocatedBytes(thread.threadId());
+            assertEquals(0, after - before, "bytes allocated by the backing thread over " + MEASURED_LOOPS + " loops");
+        }finally{
+            thread.stopRunning(1000);
+        }
+    }
+
+    private static void awaitLoops(CoreComponentBackingThread thread, long loops) throws InterruptedException{
+        long target = thread.getLoopTiming().loops + loops;
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while(thread.getLoopTiming().loops < target){
+            if(System.nanoTime() - deadline > 0){
+                throw new AssertionError("backing thread didn't do " + loops + " loops in 30s");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package EngineCore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import EngineCore.DefaultComponents.ComponentType;
+import EngineCore.DefaultComponents.CoreComponent;
+import EngineCore.Threading.Supervisor;
+
+// restart backoff and the circuit breaker. the test thread steps the component itself (scheduledStep, like a
+// backing thread would), so it sees exactly when the restart happens
+public class SupervisorTest {
+
+    private static class Failing extends CoreComponent {
+        volatile boolean fail = true;
+        int updates = 0;
+        int steps = 0;
+
+        Failing(String name, EngineCore core){
+            super(name, true, core, ComponentType.OTHER);
+        }
+
+        @Override
+        protected void step(EngineCore core){
+            this.steps += 1;
+            if(this.fail){
+                throw new IllegalStateException("step " + this.steps + " failed");
+            }
+        }
+
+        @Override
+        protected void update(EngineCore core){
+            this.updates += 1;
+        }
+
+        @Override
+        protected int test(TestingEnviromentCore core){
+            return 0;
+        }
+    }
+
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+
+    private Failing component(Supervisor.RestartPolicy policy){
+        EngineCore core = new EngineCore(false, null);
+        core.wipeComponents();
+        core.setErrorHandler((String source, Throwable error) -> this.errors.add(source + ": " + error.getMessage()));
+        Failing comp = new Failing("flaky", core);
+        core.addComponent(comp);
+        core.supervisor.setPolicy(comp.name, policy);
+        return comp;
+    }
+
+    // steps until the component's update runs again, returns how long after the failure that was
+    private static long awaitRestart(Failing comp, long failedAt){
+        int updates = comp.updates;
+        long deadline = failedAt + 5_000_000_000L;
+        while(comp.updates == updates){
+            if(System.nanoTime() - deadline > 0){
+                throw new AssertionError("no restart in 5s");
+            }
+            comp.scheduledStep(comp.core);
+        }
+        return System.nanoTime() - failedAt;
+    }
+
+    @Test
+    public void backoffDoublesUpToTheMaxAndTheCircuitOpensAtMaxFailures(){
+        long initialMillis = 20;
+        long maxMillis = 80;
+        Failing comp = this.component(new Supervisor.RestartPolicy(initialMillis, maxMillis, 5, 60_000));
+        long[] expected = {20, 40, 80, 80}; // the 5th failure opens the circuit instead
+        for(int i = 0; i < expected.length; i++){
+            long failedAt = System.nanoTime();
+            assertFalse(comp.scheduledStep(comp.core), "the failing step reported busy");
+            assertTrue(comp.isRestarting(), "restarting after failure " + (i + 1));
+            long waited = awaitRestart(comp, failedAt);
+            assertTrue(waited >= expected[i] * 1_000_000, "restart " + (i + 1) + " after " + waited / 1_000_000d + " ms, expected " + expected[i]);
+            assertTrue(waited < (expected[i] + 1_000) * 1_000_000, "restart " + (i + 1) + " took " + waited / 1_000_000d + " ms");
+            assertFalse(comp.isRestarting());
+        }
+
+        comp.scheduledStep(comp.core); // 5th failure in the window
+        assertTrue(comp.isCircuitOpen(), "circuit open after 5 failures");
+        int updates = comp.updates;
+        int steps = comp.steps;
+        for(int i = 0; i < 100; i++){
+            assertFalse(comp.scheduledStep(comp.core));
+        }
+        assertEquals(updates, comp.updates, "restarts while the circuit is open");
+        assertEquals(steps, comp.steps, "steps while the circuit is open");
+
+        Supervisor.ComponentHealth health = comp.core.supervisor.getHealth().get(0);
+        assertEquals(5, health.failures);
+        assertEquals(4, health.restarts);
+        assertEquals(5, health.failuresInWindow);
+        assertTrue(health.circuitOpen);
+        assertEquals(5, this.errors.size());
+        assertEquals("component flaky: step 5 failed", this.errors.get(4));
+
+        // reset closes it and restarts right away
+        comp.fail = false;
+        comp.core.supervisor.reset(comp.name);
+        assertFalse(comp.isCircuitOpen());
+        assertTrue(comp.scheduledStep(comp.core), "the restart after reset");
+        assertEquals(updates + 1, comp.updates);
+        assertTrue(comp.scheduledStep(comp.core), "a normal step after the reset");
+        assertEquals(steps + 1, comp.steps);
+    }
+
+    // only failures inside the window count towards opening the circuit
+    @Test
+    public void failuresOutsideTheWindowDontOpenTheCircuit() throws InterruptedException{
+        Failing comp = this.component(new Supervisor.RestartPolicy(0, 0, 2, 50));
+        ArrayList<Boolean> open = new ArrayList<>();
+        for(int i = 0; i < 5; i++){
+            comp.scheduledStep(comp.core); // fails
+            open.add(comp.isCircuitOpen());
+            awaitRestart(comp, System.nanoTime());
+            Thread.sleep(80); // past the window
+        }
+        assertEquals(List.of(false, false, false, false, false), open);
+
+        comp.scheduledStep(comp.core);
+        awaitRestart(comp, System.nanoTime());
+        comp.scheduledStep(comp.core); // two inside 50ms
+        assertTrue(comp.isCircuitOpen());
+    }
+
+    @Test
+    public void invalidPoliciesAreRejected(){
+        for(long[] p: new long[][]{{-1, 10, 1, 10}, {20, 10, 1, 10}, {1, 10, 0, 10}, {1, 10, 1, 0}}){
+            assertThrows(IllegalArgumentException.class, () -> new Supervisor.RestartPolicy(p[0], p[1], (int) p[2], p[3]));
+        }
+    }
+}